@@ -0,0 +1,96 @@
+package com.hust.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ForkJoinPool;
+
+// @EnableScheduling: flush định kỳ của SlideAutosaveBuffer, dispatch thumbnail của SlideThumbnailService
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+
+    // Executor của Spring MVC cho request async (StreamingResponseBody: bulk export, NDJSON preview, stream slide).
+    // Các executor bên dưới làm Boot bỏ qua applicationTaskExecutor mặc định (@ConditionalOnMissingBean(Executor))
+    // => khai báo lại cùng tên, có giới hạn; không có bean này MVC dùng SimpleAsyncTaskExecutor (1 thread / request).
+    // Hàng đợi đầy => TaskRejectedException => 503.
+    @Bean(name = "applicationTaskExecutor")
+    public ThreadPoolTaskExecutor applicationTaskExecutor(
+            @Value("${web.async.threads:16}") int threads,
+            @Value("${web.async.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("mvc-async-");
+        executor.initialize();
+        return executor;
+    }
+
+    // Thread pool cho batch job (tạo slide hàng loạt chạy nền, không giữ HTTP request)
+    @Bean(name = "batchTaskExecutor")
+    public ThreadPoolTaskExecutor batchTaskExecutor(
+            @Value("${batch.worker-threads:2}") int workerThreads,
+            @Value("${batch.queue-capacity:20}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workerThreads);
+        executor.setMaxPoolSize(workerThreads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("batch-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    // Pool cho bước transform (parse/validate/build JSON) của batch, song song theo số core
+    @Bean(name = "batchTransformPool", destroyMethod = "shutdown")
+    public ForkJoinPool batchTransformPool(
+            @Value("${batch.transform-parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(threads);
+    }
+
+    // Thread pool tải Google Docs khi preview batch (I/O-bound, giới hạn số kết nối đồng thời)
+    @Bean(name = "docFetchExecutor")
+    public ThreadPoolTaskExecutor docFetchExecutor(
+            @Value("${batch.doc-fetch-threads:4}") int fetchThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(fetchThreads);
+        executor.setMaxPoolSize(fetchThreads);
+        executor.setThreadNamePrefix("doc-fetch-");
+        executor.initialize();
+        return executor;
+    }
+
+    // Thread pool render cho bulk export (CPU-bound: PDF/PPTX/PNG), mặc định = số core
+    @Bean(name = "exportRenderExecutor")
+    public ThreadPoolTaskExecutor exportRenderExecutor(
+            @Value("${export.bulk.render-threads:0}") int renderThreads) {
+        int threads = renderThreads > 0 ? renderThreads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("export-render-");
+        executor.initialize();
+        return executor;
+    }
+
+    // Thread pool render thumbnail (slide và template) chạy nền (ưu tiên thấp, ít thread để không tranh CPU với request)
+    @Bean(name = "thumbnailRenderExecutor")
+    public ThreadPoolTaskExecutor thumbnailRenderExecutor(
+            @Value("${slide.thumbnail.render-threads:1}") int renderThreads,
+            @Value("${slide.thumbnail.queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(renderThreads);
+        executor.setMaxPoolSize(renderThreads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("slide-thumbnail-");
+        executor.setThreadPriority(Thread.MIN_PRIORITY);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -1,6 +1,7 @@
 package com.hust.config;
 
 import com.hust.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -49,6 +50,9 @@ public class SecurityConfig {
 
                 // Allow CORS preflight
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+
+                // Async dispatch (SSE / streaming response) đã được xác thực ở request gốc
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                 
                 // Tất cả các request khác phải được xác thực
                 .anyRequest().authenticated()
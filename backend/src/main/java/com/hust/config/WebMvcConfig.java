@@ -47,6 +47,7 @@ public class WebMvcConfig {
         
         // Expose headers để frontend có thể đọc
         configuration.addExposedHeader("Authorization");
+        configuration.addExposedHeader("ETag"); // phiên bản slide cho If-Match
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         // Áp dụng cấu hình CORS cho tất cả các endpoint (/api/**)
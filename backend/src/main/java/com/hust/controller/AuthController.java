@@ -4,6 +4,7 @@ import com.hust.dto.request.LoginRequest;    // <--- Thêm dòng này
 import com.hust.dto.request.RegisterRequest;
 import com.hust.dto.response.AuthResponse;
 import com.hust.service.AuthService;
+import com.hust.util.SecurityUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -33,4 +34,12 @@ public class AuthController {
         AuthResponse response = authService.login(request);
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    // POST /api/auth/logout-all: thu hồi mọi token của user hiện tại (cần đăng nhập)
+    @PostMapping("/logout-all")
+    public ResponseEntity<Void> logoutAll() {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        authService.logoutAll(currentUserId);
+        return ResponseEntity.noContent().build();
+    }
+}
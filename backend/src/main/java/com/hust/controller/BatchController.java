@@ -1,14 +1,25 @@
 package com.hust.controller;
 
 import com.hust.dto.request.BatchGenerateRequest;
+import com.hust.dto.request.BatchResumeRequest;
+import com.hust.dto.response.BatchJobResponse;
+import com.hust.dto.response.BatchRunResponse;
+import com.hust.dto.response.BatchUploadResponse;
 import com.hust.dto.response.PresentationResponse;
 import com.hust.dto.response.SlideDataDTO;
+import com.hust.service.BatchJobService;
+import com.hust.service.BatchRunService;
 import com.hust.service.BatchService;
+import com.hust.service.BatchUploadSessionService;
 import com.hust.util.SecurityUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 import java.util.List;
@@ -21,6 +32,15 @@ public class BatchController {
     @Autowired
     private BatchService batchService;
 
+    @Autowired
+    private BatchJobService batchJobService;
+
+    @Autowired
+    private BatchUploadSessionService batchUploadSessionService;
+
+    @Autowired
+    private BatchRunService batchRunService;
+
     // --- 1. POST /api/batch/upload (No. 6: Tải lên và Xem trước) ---
     @PostMapping("/upload")
     public ResponseEntity<List<SlideDataDTO>> uploadAndPreview(@RequestParam("file") MultipartFile file) {
@@ -34,6 +54,39 @@ public class BatchController {
         return ResponseEntity.ok(previewData); 
     }
 
+    // --- 1a. POST /api/batch/upload/stream (Xem trước dạng NDJSON: từng dòng được gửi ngay khi đọc xong) ---
+    // Mỗi dòng: {"type":"row","index":N,"row":{...}}; dòng cuối: {"type":"summary",...}.
+    // session=true: lưu dữ liệu thành phiên upload, summary kèm uploadToken.
+    @PostMapping(value = "/upload/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> uploadAndPreviewStream(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(required = false, defaultValue = "false") boolean session) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        StreamingResponseBody body = batchService.streamPreview(file, session, currentUserId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    // --- 1b. POST /api/batch/uploads (Tải lên, lưu dữ liệu phía server và trả về token) ---
+    // Generate chỉ cần gửi uploadToken (+ rowEdits / excludedRows) thay vì gửi lại toàn bộ slides.
+    @PostMapping("/uploads")
+    public ResponseEntity<BatchUploadResponse> uploadSession(@RequestParam("file") MultipartFile file) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+
+        List<SlideDataDTO> previewData = batchService.parseFile(file, currentUserId);
+        BatchUploadSessionService.UploadSession session = batchUploadSessionService.create(previewData, currentUserId);
+
+        BatchUploadResponse response = BatchUploadResponse.builder()
+                .uploadToken(session.getToken())
+                .expiresAt(session.getExpiresAt())
+                .totalRows(previewData.size())
+                .errorRows((int) previewData.stream().filter(SlideDataDTO::isError).count())
+                .rows(previewData)
+                .build();
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
     // --- 2. POST /api/batch/generate (No. 6: Tạo Slide Hàng Loạt) ---
     @PostMapping("/generate")
     public ResponseEntity<List<PresentationResponse>> generateSlides(@Valid @RequestBody BatchGenerateRequest request) {
@@ -66,4 +119,61 @@ public class BatchController {
 
         return ResponseEntity.ok(result.getCreated());
     }
-}
\ No newline at end of file
+
+    // --- 3. POST /api/batch/jobs (Tạo Slide Hàng Loạt dạng job nền, ghi theo chunk) ---
+    @PostMapping("/jobs")
+    public ResponseEntity<BatchJobResponse> submitJob(@Valid @RequestBody BatchGenerateRequest request) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        BatchJobResponse job = batchJobService.submit(request, currentUserId);
+        return ResponseEntity.accepted()
+                .header("Location", "/api/batch/jobs/" + job.getJobId())
+                .body(job);
+    }
+
+    // --- 4. GET /api/batch/jobs/{jobId}?from=N (Tiến độ + kết quả từ vị trí N) ---
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<BatchJobResponse> getJobStatus(
+            @PathVariable String jobId,
+            @RequestParam(required = false, defaultValue = "0") int from) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        return ResponseEntity.ok(batchJobService.getStatus(jobId, from, currentUserId));
+    }
+
+    // --- 5. GET /api/batch/jobs/{jobId}/events (Tiến độ qua SSE: progress / completed / failed) ---
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamJobEvents(@PathVariable String jobId) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        return batchJobService.subscribe(jobId, currentUserId);
+    }
+
+    // --- 6. POST /api/batch/runs (Batch run có checkpoint theo dòng, header Idempotency-Key) ---
+    // Dòng lỗi được ghi nhận riêng, các dòng khác vẫn được tạo; gửi lại cùng key không tạo trùng.
+    @PostMapping("/runs")
+    public ResponseEntity<BatchRunResponse> startRun(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @Valid @RequestBody BatchGenerateRequest request) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        BatchRunResponse run = batchRunService.start(request, idempotencyKey, currentUserId);
+        return ResponseEntity.accepted()
+                .header("Location", "/api/batch/runs/" + run.getRunId())
+                .body(run);
+    }
+
+    // --- 7. GET /api/batch/runs/{runId}?status=FAILED (Trạng thái run + từng dòng) ---
+    @GetMapping("/runs/{runId}")
+    public ResponseEntity<BatchRunResponse> getRun(
+            @PathVariable Long runId,
+            @RequestParam(required = false) String status) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        return ResponseEntity.ok(batchRunService.getRun(runId, status, currentUserId));
+    }
+
+    // --- 8. POST /api/batch/runs/{runId}/resume (Chạy lại các dòng lỗi / chưa xử lý) ---
+    @PostMapping("/runs/{runId}/resume")
+    public ResponseEntity<BatchRunResponse> resumeRun(
+            @PathVariable Long runId,
+            @RequestBody(required = false) BatchResumeRequest request) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        return ResponseEntity.accepted().body(batchRunService.resume(runId, request, currentUserId));
+    }
+}
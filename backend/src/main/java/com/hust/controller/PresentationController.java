@@ -1,6 +1,7 @@
 package com.hust.controller;
 
 import com.hust.dto.request.CreatePresentationFromTemplateRequest;
+import com.hust.dto.response.PresentationPageResponse;
 import com.hust.dto.response.PresentationResponse;
 import com.hust.service.PresentationService;
 import com.hust.util.SecurityUtil;
@@ -13,14 +14,23 @@ import org.springframework.core.io.Resource;   // <--- KHẮC PHỤC LỖI Resou
 import jakarta.validation.Valid;               // <--- KHẮC PHỤC LỖI Valid
 import java.util.List;
 
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders; 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.hust.dto.request.BulkExportRequest;
+import com.hust.dto.request.SlideBatchUpdateRequest;
+import com.hust.dto.response.SlideVersionResponse;
+import com.hust.service.BulkExportService;
 @RestController
 @RequestMapping("/presentations")
 public class PresentationController {
 
     @Autowired private PresentationService presentationService;
     @Autowired private SlideService slideService;
+    @Autowired private BulkExportService bulkExportService;
 
     // --- 1. GET /api/presentations/recents (No. 3: Dashboard) ---
     @GetMapping("/recents")
@@ -32,14 +42,30 @@ public class PresentationController {
         return ResponseEntity.ok(projects);
     }
 
+    // --- 1b. GET /api/presentations?limit=20&cursor=... (Danh sách dự án, phân trang theo cursor) ---
+    @GetMapping
+    public ResponseEntity<PresentationPageResponse> listProjects(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "20") int limit) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        return ResponseEntity.ok(presentationService.listPresentations(currentUserId, cursor, limit));
+    }
+
     // --- 2. GET /api/presentations/{id} (Mở Dự án từ Dashboard hoặc truy cập trực tiếp) ---
     @GetMapping("/{id}")
-    public ResponseEntity<PresentationResponse> getProjectDetails(@PathVariable Long id) {
+    public ResponseEntity<PresentationResponse> getProjectDetails(@PathVariable Long id, WebRequest webRequest) {
         
         Long currentUserId = SecurityUtil.getCurrentUserId();
+        String etag = presentationService.getPresentationETag(id, currentUserId);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
         PresentationResponse project = presentationService.getPresentationDetails(id, currentUserId);
         
-        return ResponseEntity.ok(project);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(project);
     }
 
     // --- 3. POST /api/presentations/from-template (Tạo dự án từ Template deck) ---
@@ -83,4 +109,25 @@ public class PresentationController {
             .contentType(contentType)
                 .body(fileResource);
     }
-}
\ No newline at end of file
+
+    // --- 5. POST /api/presentations/bulk-export (Export nhiều dự án vào 1 file ZIP, stream trực tiếp) ---
+    @PostMapping("/bulk-export")
+    public ResponseEntity<StreamingResponseBody> bulkExport(@Valid @RequestBody BulkExportRequest request) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        BulkExportService.BulkExport export = bulkExportService.prepare(request, currentUserId);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + export.getFileName() + "\"")
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(export.getBody());
+    }
+
+    // --- 6. PUT /api/presentations/{id}/slides:batch (Lưu nhiều slide trong 1 request / 1 transaction) ---
+    @PutMapping("/{id}/slides:batch")
+    public ResponseEntity<List<SlideVersionResponse>> saveSlidesBatch(
+            @PathVariable Long id,
+            @Valid @RequestBody SlideBatchUpdateRequest request) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        return ResponseEntity.ok(slideService.saveSlidesBatch(id, request, currentUserId));
+    }
+}
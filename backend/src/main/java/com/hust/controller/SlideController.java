@@ -1,18 +1,30 @@
 package com.hust.controller;
 
 import com.hust.dto.request.QuickCreateRequest;
+import com.hust.dto.request.SlidePositionRequest;
 import com.hust.dto.request.SlideUpdateRequest;
 import com.hust.dto.response.PresentationResponse;
+import com.hust.dto.response.SlideOutlineResponse;
 import com.hust.dto.response.SlideResponse;
-import com.hust.entity.Slide;
 import com.hust.service.SlideService;
+import com.hust.service.SlideThumbnailService;
+import com.hust.util.JsonPatchUtil;
 import com.hust.util.SecurityUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/slides")
@@ -21,6 +33,9 @@ public class SlideController {
     @Autowired
     private SlideService slideService;
 
+    @Autowired
+    private SlideThumbnailService slideThumbnailService;
+
     // --- 0. POST /api/slides/quick-create (Quick Create) ---
     @PostMapping("/quick-create")
     public ResponseEntity<PresentationResponse> quickCreate(@Valid @RequestBody QuickCreateRequest request) {
@@ -31,38 +46,98 @@ public class SlideController {
 
     // --- 1. POST /api/slides/project/{projectId} (NEW: Thêm Slide Mới) ---
     @PostMapping("/project/{projectId}")
-    public ResponseEntity<SlideResponse> addNewSlide(@PathVariable Long projectId) {
+    public ResponseEntity<SlideResponse> addNewSlide(
+            @PathVariable Long projectId,
+            @RequestParam(required = false) Integer position) {
         
         Long currentUserId = SecurityUtil.getCurrentUserId();
-        Slide newSlide = slideService.addNewSlideToPresentation(projectId, currentUserId);
+        SlideResponse newSlide = slideService.addNewSlideToPresentation(projectId, position, currentUserId);
         
         // Trả về Slide mới được tạo, Frontend sẽ thêm nó vào danh sách Thumbnails (③)
-        return ResponseEntity.status(201).body(SlideResponse.builder()
-                .id(newSlide.getId())
-                .slideIndex(newSlide.getSlideIndex())
-                .contentJson(newSlide.getContentJson())
-                .build());
+        return ResponseEntity.status(201).body(newSlide);
     }
 
     // --- 1b. GET /api/slides/project/{projectId} (Load slides for editor) ---
+    // If-None-Match khớp ETag (id/version/thứ tự của các slide) => 304, không tải content.
     @GetMapping("/project/{projectId}")
-    public ResponseEntity<List<SlideResponse>> getSlidesByProject(@PathVariable Long projectId) {
+    public ResponseEntity<List<SlideResponse>> getSlidesByProject(@PathVariable Long projectId, WebRequest webRequest) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        String etag = slideService.getSlidesETag(projectId, currentUserId);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(slideService.getSlidesByPresentation(projectId, currentUserId));
+    }
+
+    // --- 1b'. GET /api/slides/project/{projectId}/stream (Deck lớn: stream, "content" là JSON object thay vì chuỗi) ---
+    @GetMapping(value = "/project/{projectId}/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSlidesByProject(@PathVariable Long projectId, WebRequest webRequest) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        String etag = slideService.getSlidesETag(projectId, currentUserId);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(slideService.streamSlidesByPresentation(projectId, currentUserId));
+    }
+
+    // --- 1c. GET /api/slides/project/{projectId}/outline (Filmstrip: id, số thứ tự, title, version của từng slide) ---
+    @GetMapping("/project/{projectId}/outline")
+    public ResponseEntity<List<SlideOutlineResponse>> getSlideOutline(@PathVariable Long projectId) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        return ResponseEntity.ok(slideService.getSlideOutline(projectId, currentUserId));
+    }
+
+    // --- 1d. GET /api/slides/project/{projectId}/content?ids=1,2,3 (Nội dung đầy đủ của các slide đang hiển thị) ---
+    @GetMapping("/project/{projectId}/content")
+    public ResponseEntity<List<SlideResponse>> getSlideContentWindow(
+            @PathVariable Long projectId,
+            @RequestParam List<Long> ids) {
         Long currentUserId = SecurityUtil.getCurrentUserId();
-        return ResponseEntity.ok(slideService.getSlidesByPresentation(projectId, currentUserId));
+        return ResponseEntity.ok(slideService.getSlideContentWindow(projectId, ids, currentUserId));
     }
 
     // --- 2. PUT /api/slides/{id} (No. 7: Nút Lưu ⑦) ---
+    // If-Match: version slide (ETag / SlideResponse.version) client đang giữ; không gửi = không kiểm tra.
+    // autosave=true (editor tự lưu): kiểm tra If-Match, ghi qua bộ đệm write-behind, trả về 202 + ETag (version sau khi ghi).
     @PutMapping("/{id}")
     public ResponseEntity<Void> updateSlideContent(
             @PathVariable Long id, 
+            @RequestParam(defaultValue = "false") boolean autosave,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody SlideUpdateRequest request) {
         
         Long currentUserId = SecurityUtil.getCurrentUserId();
-        slideService.updateSlideContent(id, request, currentUserId);
+        if (autosave) {
+            Long version = slideService.autosaveSlideContent(id, request, parseVersion(ifMatch), currentUserId);
+            return ResponseEntity.accepted().eTag(String.valueOf(version)).build();
+        }
+        Long version = slideService.updateSlideContent(id, request, parseVersion(ifMatch), currentUserId);
         
-        return ResponseEntity.noContent().build();
+        return ResponseEntity.noContent().eTag(String.valueOf(version)).build();
     }
-    
+
+    // --- 2b. PATCH /api/slides/{id} (Chỉ gửi phần thay đổi: JSON Patch hoặc merge patch) ---
+    @PatchMapping(value = "/{id}", consumes = {JsonPatchUtil.JSON_PATCH, JsonPatchUtil.MERGE_PATCH})
+    public ResponseEntity<Void> patchSlideContent(
+            @PathVariable Long id,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody String patch) {
+
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        boolean mergePatch = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.valueOf(JsonPatchUtil.MERGE_PATCH));
+        Long version = slideService.patchSlideContent(id, patch, mergePatch, parseVersion(ifMatch), currentUserId);
+
+        return ResponseEntity.noContent().eTag(String.valueOf(version)).build();
+    }
+
     // --- 3. DELETE /api/slides/{id} (No. 7: Xóa Slide) ---
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteSlide(@PathVariable Long id) {
@@ -72,4 +147,63 @@ public class SlideController {
         
         return ResponseEntity.noContent().build();
     }
-}
\ No newline at end of file
+
+    // --- 4. PATCH /api/slides/{id}/position (Di chuyển Slide, position bắt đầu từ 1) ---
+    @PatchMapping("/{id}/position")
+    public ResponseEntity<SlideResponse> moveSlide(
+            @PathVariable Long id,
+            @Valid @RequestBody SlidePositionRequest request) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        return ResponseEntity.ok(slideService.moveSlide(id, request.getPosition(), currentUserId));
+    }
+
+    // --- 5. GET /api/slides/{id}/thumbnail?v={thumbnailKey} (Thumbnail PNG cho dashboard / filmstrip) ---
+    // v khớp khóa hiện tại (SlideOutlineResponse.thumbnailKey) => file bất biến, cache 1 năm.
+    // Không có / khác v => ETag = khóa, client phải kiểm tra lại (304 nếu chưa đổi).
+    // Chưa có file (slide mới / vừa dọn) => 202 + Retry-After, render chạy nền.
+    @GetMapping("/{id}/thumbnail")
+    public ResponseEntity<Resource> getSlideThumbnail(
+            @PathVariable Long id,
+            @RequestParam(required = false) String v,
+            WebRequest webRequest) {
+        Long currentUserId = SecurityUtil.getCurrentUserId();
+        SlideThumbnailService.Thumbnail thumbnail = slideThumbnailService.getThumbnail(id, currentUserId).orElse(null);
+        if (thumbnail == null) {
+            // Đang render nền: client thử lại sau Retry-After.
+            return ResponseEntity.accepted()
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .cacheControl(CacheControl.noStore())
+                    .build();
+        }
+
+        String etag = "\"" + thumbnail.key() + "\"";
+        CacheControl cacheControl = thumbnail.key().equals(v)
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable()
+                : CacheControl.noCache().cachePrivate();
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .contentType(MediaType.IMAGE_PNG)
+                .body(new FileSystemResource(thumbnail.file()));
+    }
+
+    // If-Match: "3" / W/"3" => 3; "*" hoặc không gửi => null.
+    private static Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || "*".equals(ifMatch.trim())) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        tag = tag.replace("\"", "");
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("If-Match ヘッダーが不正です: " + ifMatch);
+        }
+    }
+}
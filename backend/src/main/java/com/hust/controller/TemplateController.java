@@ -1,16 +1,24 @@
 package com.hust.controller;
 
 import com.hust.dto.request.TemplateCreateRequest;
+import com.hust.dto.response.TemplatePageResponse;
 import com.hust.dto.response.TemplateResponse;
 import com.hust.dto.response.TemplateSlideResponse;
+import com.hust.service.TemplateLibraryCache;
+import com.hust.service.TemplatePreviewService;
 import com.hust.service.TemplateService;
 import com.hust.util.SecurityUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import jakarta.validation.Valid;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/templates")
@@ -19,20 +27,56 @@ public class TemplateController {
     @Autowired
     private TemplateService templateService;
 
+    @Autowired
+    private TemplatePreviewService templatePreviewService;
+
     // --- 1. GET /api/templates (No. 4: Template Library) ---
     @GetMapping
+    // Thư viện public giống nhau với mọi người xem: lấy từ cache, ETag + cache ngắn (shared cache được phép lưu).
     public ResponseEntity<List<TemplateResponse>> getTemplates(
-            @RequestParam(required = false, defaultValue = "public") String type) {
+            @RequestParam(required = false, defaultValue = "public") String type,
+            WebRequest webRequest) {
 
         // Public templates should be readable without login.
         // Only "mine" requires authentication.
+        if ("mine".equalsIgnoreCase(type)) {
+            Long currentUserId = SecurityUtil.getCurrentUserId();
+            List<TemplateResponse> templates = templateService.getTemplates(type, currentUserId);
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(templates);
+        }
+
+        TemplateLibraryCache.PublicLibrary library = templateService.getPublicLibrary();
+        CacheControl cacheControl = CacheControl.maxAge(60, TimeUnit.SECONDS).cachePublic();
+        if (webRequest.checkNotModified(library.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(library.etag()).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(library.etag())
+                .cacheControl(cacheControl)
+                .body(library.templates());
+    }
+
+    // --- 1b. GET /api/templates/page?type=public|mine&q=&theme=&limit=20&cursor=... (Phân trang theo cursor + tìm kiếm) ---
+    @GetMapping("/page")
+    public ResponseEntity<TemplatePageResponse> listTemplates(
+            @RequestParam(required = false, defaultValue = "public") String type,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String theme,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "20") int limit) {
         Long currentUserId = null;
         if ("mine".equalsIgnoreCase(type)) {
             currentUserId = SecurityUtil.getCurrentUserId();
+        } else {
+            try {
+                currentUserId = SecurityUtil.getCurrentUserId();
+            } catch (Exception ignored) {
+                // optional auth: public templates are readable without login (isOwner = false)
+            }
         }
-
-        List<TemplateResponse> templates = templateService.getTemplates(type, currentUserId);
-        return ResponseEntity.ok(templates);
+        return ResponseEntity.ok(templateService.listTemplates(type, q, theme, cursor, limit, currentUserId));
     }
 
     // --- 2. POST /api/templates (No. 5: Create New Template) ---
@@ -55,15 +99,60 @@ public class TemplateController {
 
     // --- 4. GET /api/templates/{id}/slides (For selecting a layout) ---
     @GetMapping("/{id}/slides")
-    public ResponseEntity<List<TemplateSlideResponse>> getTemplateSlides(@PathVariable Long id) {
+    public ResponseEntity<List<TemplateSlideResponse>> getTemplateSlides(@PathVariable Long id, WebRequest webRequest) {
+        Long currentUserId = null;
+        try {
+            currentUserId = SecurityUtil.getCurrentUserId();
+        } catch (Exception ignored) {
+            // optional auth: public templates are readable without login
+        }
+
+        // Template không đổi kể từ lần tải trước (editedAt) => 304, không đọc layout_json.
+        String etag = templateService.getTemplateSlidesETag(id, currentUserId);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(templateService.getTemplateSlides(id, currentUserId));
+    }
+
+    // --- 4b. GET /api/templates/{id}/preview?v={hash}&w={width} (Ảnh preview, thay cho data URL trong danh sách) ---
+    // v khớp hash hiện tại => bất biến, cache 1 năm (public nếu template public). Không có / khác v => ETag, kiểm tra lại.
+    @GetMapping("/{id}/preview")
+    public ResponseEntity<byte[]> getTemplatePreview(
+            @PathVariable Long id,
+            @RequestParam(required = false) String v,
+            @RequestParam(required = false) Integer w,
+            WebRequest webRequest) {
         Long currentUserId = null;
         try {
             currentUserId = SecurityUtil.getCurrentUserId();
         } catch (Exception ignored) {
             // optional auth: public templates are readable without login
         }
+        if (w != null && w <= 0) {
+            throw new IllegalArgumentException("w は正の整数で指定してください。");
+        }
 
-        return ResponseEntity.ok(templateService.getTemplateSlides(id, currentUserId));
+        TemplatePreviewService.Preview preview = templatePreviewService.getPreview(id, w, currentUserId);
+        CacheControl cacheControl = preview.hash().equals(v)
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).immutable()
+                : CacheControl.noCache();
+        cacheControl = preview.isPublic() ? cacheControl.cachePublic() : cacheControl.cachePrivate();
+        String etag = "\"" + preview.hash() + (w != null ? "-" + w : "") + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .contentType(MediaType.parseMediaType(preview.contentType()))
+                // SVG do user gửi lên: không cho chạy script khi mở trực tiếp.
+                .header("Content-Security-Policy", "default-src 'none'; style-src 'unsafe-inline'; img-src data:")
+                .header("X-Content-Type-Options", "nosniff")
+                .body(preview.bytes());
     }
 
     // --- 5. GET /api/templates/{id} (For editing template metadata) ---
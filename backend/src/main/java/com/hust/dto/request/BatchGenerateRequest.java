@@ -1,20 +1,35 @@
 package com.hust.dto.request;
 
 import com.hust.dto.response.SlideDataDTO;
-import jakarta.validation.constraints.NotEmpty;
 import lombok.Data;
 
 import java.util.List;
 
 @Data
 public class BatchGenerateRequest {
-    
-    @NotEmpty(message = "スライド一覧は必須です。")
-    private List<SlideDataDTO> slides; // Dữ liệu đã được Frontend xác nhận
-    
+
+    // Dữ liệu đã được Frontend xác nhận. Bắt buộc nếu không gửi uploadToken.
+    private List<SlideDataDTO> slides;
+
+    // Tùy chọn: token phiên upload (POST /api/batch/uploads) thay cho việc gửi lại toàn bộ slides.
+    private String uploadToken;
+
+    // Dùng cùng uploadToken: index (theo thứ tự trong phiên) các dòng bị bỏ chọn.
+    private List<Integer> excludedRows;
+
+    // Dùng cùng uploadToken: các dòng được sửa trên màn hình xem trước.
+    private List<RowEdit> rowEdits;
+
     // Tùy chọn: ID của Template (deck) được chọn để áp dụng bố cục theo từng slide.
     private Long templateId;
 
     // Tùy chọn: ID của Template Slide được chọn để áp dụng bố cục
-    private Long templateSlideId; 
-}
\ No newline at end of file
+    private Long templateSlideId;
+
+    @Data
+    public static class RowEdit {
+        private Integer index;
+        private String name;    // null = giữ nguyên
+        private String content; // null = giữ nguyên
+    }
+}
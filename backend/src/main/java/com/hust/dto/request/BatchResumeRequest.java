@@ -0,0 +1,12 @@
+package com.hust.dto.request;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchResumeRequest {
+
+    // Tùy chọn: sửa các dòng lỗi trước khi chạy lại (index theo thứ tự dòng của run).
+    private List<BatchGenerateRequest.RowEdit> rowEdits;
+}
@@ -0,0 +1,22 @@
+package com.hust.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkExportRequest {
+
+    // Chỉ định 1 trong 2: danh sách presentation hoặc batch run (lấy các presentation đã tạo thành công).
+    private List<Long> presentationIds;
+
+    private Long batchRunId;
+
+    @NotBlank(message = "エクスポート形式は必須です。")
+    private String format; // PDF, PNG, PPTX
+
+    private String fileName; // Tên file zip (mặc định: presentations)
+
+    private String font;
+}
@@ -0,0 +1,37 @@
+package com.hust.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class SlideBatchUpdateRequest {
+
+    @NotEmpty(message = "更新するスライドがありません。")
+    @Size(max = 1000, message = "一度に更新できるスライドは1000件までです。")
+    @Valid
+    private List<SlideItem> slides;
+
+    @Data
+    public static class SlideItem {
+        @NotNull(message = "スライドIDは必須です。")
+        private Long id;
+
+        // Giống PUT /api/slides/{id} (SlideUpdateRequest): có updatedContentJson thì ghi đè cả document, không thì chỉ title/content.
+        @NotBlank(message = "スライドのタイトルは必須です。")
+        private String title;
+
+        @NotBlank(message = "スライドの内容は必須です。")
+        private String content;
+
+        private String updatedContentJson;
+
+        // Tùy chọn: version client đang giữ (như If-Match); khác version hiện tại => cả batch bị từ chối (412).
+        private Long version;
+    }
+}
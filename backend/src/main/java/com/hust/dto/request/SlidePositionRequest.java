@@ -0,0 +1,13 @@
+package com.hust.dto.request;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class SlidePositionRequest {
+
+    @NotNull(message = "位置は必須です。")
+    @Min(value = 1, message = "位置は1以上で指定してください。")
+    private Integer position; // Vị trí mới (1 = đầu tiên)
+}
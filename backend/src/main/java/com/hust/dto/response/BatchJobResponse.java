@@ -0,0 +1,29 @@
+package com.hust.dto.response;
+
+import java.time.Instant;
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Data;
+
+// Trạng thái của 1 batch job (POST /api/batch/jobs, GET /api/batch/jobs/{jobId})
+@Data
+@Builder
+public class BatchJobResponse {
+    private String jobId;
+    private String status; // QUEUED, RUNNING, COMPLETED, FAILED
+
+    private int totalRows;
+    private int processedRows;
+    private int createdCount;
+
+    private List<String> warnings;
+
+    // Kết quả trả về theo từng phần: các presentation từ vị trí `from` (query param) trở đi
+    private List<PresentationResponse> created;
+    private int nextOffset;
+
+    private String errorMessage;
+    private Instant startedAt;
+    private Instant finishedAt;
+}
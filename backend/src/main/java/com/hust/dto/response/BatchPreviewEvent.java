@@ -0,0 +1,23 @@
+package com.hust.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * 1 dòng NDJSON của preview dạng stream (POST /api/batch/upload/stream).
+ * - type = "row": 1 dòng dữ liệu (index theo thứ tự emit).
+ * - type = "summary": dòng cuối cùng, tổng kết (và uploadToken nếu có lưu phiên upload).
+ */
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchPreviewEvent {
+    private String type;
+    private Integer index;
+    private SlideDataDTO row;
+    private Integer totalRows;
+    private Integer errorRows;
+    private String uploadToken;
+    private String errorMessage;
+}
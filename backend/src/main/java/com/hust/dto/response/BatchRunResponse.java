@@ -0,0 +1,33 @@
+package com.hust.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+public class BatchRunResponse {
+    private Long runId;
+    private String idempotencyKey;
+    private String status;        // RUNNING, COMPLETED, PARTIAL, FAILED
+    private int totalRows;
+    private int succeededRows;
+    private int failedRows;
+    private int pendingRows;
+    private String errorMessage;
+    private Instant createdAt;
+    private Instant updatedAt;
+    private List<RowStatus> rows;
+
+    @Data
+    @Builder
+    public static class RowStatus {
+        private int rowIndex;
+        private String name;
+        private String status;    // PENDING, SUCCEEDED, FAILED
+        private String errorMessage;
+        private Long presentationId;
+    }
+}
@@ -0,0 +1,17 @@
+package com.hust.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+public class BatchUploadResponse {
+    private String uploadToken;      // Gửi lại khi generate thay cho toàn bộ slides
+    private Instant expiresAt;
+    private int totalRows;
+    private int errorRows;
+    private List<SlideDataDTO> rows; // Dữ liệu xem trước (Bảng ⑤)
+}
@@ -1,8 +1,10 @@
 package com.hust.dto.response;
 
 import java.time.Instant;
+import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -18,4 +20,8 @@ public class ErrorResponse {
     private Instant timestamp;
     private String message;
     private String details;
+
+    // Chỉ có ở 409/412 của lưu batch: {id, version} hiện tại của từng slide bị từ chối.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<SlideVersionResponse> conflicts;
 }
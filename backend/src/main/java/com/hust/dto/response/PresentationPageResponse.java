@@ -0,0 +1,14 @@
+package com.hust.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class PresentationPageResponse {
+    private List<PresentationResponse> items;
+    private String nextCursor; // null = hết dữ liệu
+    private boolean hasMore;
+}
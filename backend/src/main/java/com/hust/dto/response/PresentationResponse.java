@@ -12,6 +12,7 @@ public class PresentationResponse {
     private String title;
     private String ownerUsername; // Người tạo (④)
     private Instant editedDate; // Ngày chỉnh sửa (⑤)
+    private Long version;       // ETag của GET /api/presentations/{id}
     
     // Thêm các trường khác nếu cần (ví dụ: số lượng slides)
 }
\ No newline at end of file
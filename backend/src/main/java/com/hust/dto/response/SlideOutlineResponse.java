@@ -0,0 +1,14 @@
+package com.hust.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class SlideOutlineResponse {
+    private Long id;
+    private Integer slideIndex; // Số thứ tự hiển thị (1, 2, 3...)
+    private String title;
+    private Long version;
+    private String thumbnailKey; // GET /api/slides/{id}/thumbnail?v=thumbnailKey (cache lâu dài); null = chưa tạo
+}
@@ -9,4 +9,5 @@ public class SlideResponse {
     private Long id;
     private Integer slideIndex;
     private String contentJson;
+    private Long version; // Gửi lại trong If-Match khi lưu (PUT/PATCH)
 }
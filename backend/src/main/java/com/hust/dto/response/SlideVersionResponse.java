@@ -0,0 +1,11 @@
+package com.hust.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class SlideVersionResponse {
+    private Long id;
+    private Long version;
+}
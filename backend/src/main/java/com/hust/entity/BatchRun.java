@@ -0,0 +1,47 @@
+package com.hust.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+
+@Entity
+@Table(name = "batch_runs",
+        uniqueConstraints = @UniqueConstraint(name = "uk_batch_runs_owner_key", columnNames = {"owner_id", "idempotency_key"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "owner_id", nullable = false)
+    private User owner;
+
+    @Column(name = "idempotency_key", nullable = false, length = 100)
+    private String idempotencyKey; // Cùng key => cùng 1 run, gửi lại không tạo trùng
+
+    private Long templateId;
+
+    private Long templateSlideId;
+
+    @Column(nullable = false, length = 20)
+    private String status; // RUNNING, COMPLETED, PARTIAL, FAILED
+
+    private int totalRows;
+
+    private int succeededRows;
+
+    private int failedRows;
+
+    @Column(columnDefinition = "TEXT")
+    private String errorMessage; // Lỗi chung của run (template không tồn tại, ...)
+
+    private Instant createdAt;
+
+    private Instant updatedAt;
+}
@@ -0,0 +1,46 @@
+package com.hust.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+
+@Entity
+@Table(name = "batch_run_rows",
+        uniqueConstraints = @UniqueConstraint(name = "uk_batch_run_rows_run_index", columnNames = {"run_id", "row_index"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRunRow {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "batch_run_rows_id_seq")
+    @SequenceGenerator(name = "batch_run_rows_id_seq", sequenceName = "batch_run_rows_id_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "run_id", nullable = false)
+    private BatchRun run;
+
+    @Column(name = "row_index", nullable = false)
+    private int rowIndex; // Thứ tự dòng trong dữ liệu gửi lên (0-based)
+
+    private String name;
+
+    @Column(columnDefinition = "TEXT")
+    private String content;
+
+    @Column(nullable = false, length = 20)
+    private String status; // PENDING, SUCCEEDED, FAILED
+
+    // Dòng bị đánh dấu lỗi ngay từ dữ liệu gửi lên: chỉ chạy lại khi đã được sửa.
+    private boolean inputError;
+
+    @Column(columnDefinition = "TEXT")
+    private String errorMessage;
+
+    private Long presentationId; // Presentation đã tạo (checkpoint, commit cùng transaction)
+
+    private Instant updatedAt;
+}
@@ -7,14 +7,16 @@ import lombok.NoArgsConstructor;
 import java.time.Instant;
 
 @Entity
-@Table(name = "presentations")
+@Table(name = "presentations",
+        indexes = @Index(name = "idx_presentations_owner_edited", columnList = "owner_id, edited_date DESC, id DESC"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Presentation {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "presentations_id_seq")
+    @SequenceGenerator(name = "presentations_id_seq", sequenceName = "presentations_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -32,6 +34,12 @@ public class Presentation {
 
     private Instant editedDate; // Dùng để sắp xếp trong Dashboard (No. 3)
 
+    // Optimistic locking khi lưu entity (UPDATE ... WHERE version = ?). editedDate được cập nhật bằng
+    // câu UPDATE riêng (touchEditedDate) nên sửa nội dung slide không làm đổi version của presentation.
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     // @OneToMany(mappedBy = "presentation", cascade = CascadeType.ALL)
     // private List<Slide> slides; 
 }
\ No newline at end of file
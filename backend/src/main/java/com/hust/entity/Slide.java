@@ -4,33 +4,61 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
 import java.time.Instant;
 
 @Entity
-@Table(name = "slides")
+@Table(name = "slides",
+        indexes = @Index(name = "idx_slides_presentation_index", columnList = "presentation_id, slide_index"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Slide {
 
+    // SEQUENCE (pooled) thay cho IDENTITY để Hibernate có thể gom INSERT thành JDBC batch.
+    // Dùng lại sequence sẵn có của cột bigserial; xem sql.txt (INCREMENT BY 50).
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "slides_id_seq")
+    @SequenceGenerator(name = "slides_id_seq", sequenceName = "slides_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "presentation_id", nullable = false)
     private Presentation presentation;
 
+    // Khoảng cách giữa 2 khóa thứ tự liền kề khi tạo mới / đánh số lại.
+    public static final int ORDER_GAP = 1024;
+
+    // Khóa thứ tự thưa (ORDER_GAP, 2*ORDER_GAP, ...): chèn / di chuyển chỉ cần lấy khóa ở giữa 2 slide
+    // kề nhau (ghi 1 dòng). Số thứ tự hiển thị (1, 2, 3...) được tính khi trả về cho client.
     @Column(name = "slide_index", nullable = false)
-    private Integer slideIndex; // Thứ tự của slide
+    private Integer slideIndex;
+
+    // JSON String chứa nội dung chi tiết (text, image URLs, data từ Quick Create).
+    // Lưu dạng jsonb: sửa title/content tại chỗ bằng jsonb_set, đọc 1 trường bằng ->> (xem SlideRepository).
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "content_json", columnDefinition = "jsonb")
+    private String contentJson;
 
-    // JSON String chứa nội dung chi tiết (text, image URLs, data từ Quick Create)
-    @Column(name = "content_json", columnDefinition = "TEXT")
-    private String contentJson; 
+    // Cột sinh tự động (STORED) từ content_json: filmstrip/outline đọc tiêu đề mà không cần parse JSON.
+    @Column(name = "title", insertable = false, updatable = false,
+            columnDefinition = "text GENERATED ALWAYS AS (COALESCE(content_json -> 'data' ->> 'title', content_json ->> 'title')) STORED")
+    private String title;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "layout_used_id")
     private TemplateSlide layoutUsed; // TemplateSlide được dùng làm bố cục
 
     private Instant lastModified;
+
+    // Khóa (SHA-256) của thumbnail PNG trên đĩa, do SlideThumbnailService ghi; entity không bao giờ ghi đè.
+    @Column(name = "thumbnail_key", length = 64, insertable = false, updatable = false)
+    private String thumbnailKey;
+
+    // Optimistic locking: client gửi lại qua If-Match khi PATCH; dòng cũ nhận giá trị mặc định 0.
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
 }
\ No newline at end of file
@@ -37,6 +37,15 @@ public class Template {
     @Column(columnDefinition = "TEXT")
     private String previewImageUrl;
 
+    // SHA-256 của previewImageUrl (đã chuẩn hóa): đặt vào URL /api/templates/{id}/preview?v=... để cache bất biến.
+    @Column(name = "preview_hash", length = 64)
+    private String previewHash;
+
+    // true: preview do hệ thống tạo (placeholder / thumbnail render từ slide đầu) => được render lại khi deck đổi.
+    // false: ảnh do user chọn. NULL: dữ liệu cũ (xem TemplateThumbnailService).
+    @Column(name = "preview_generated")
+    private Boolean previewGenerated;
+
     private Instant createdAt;
 
     // Used for Dashboard "recent" and edit history
@@ -4,6 +4,9 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
 import java.time.Instant;
 
 @Entity
@@ -14,16 +17,18 @@ import java.time.Instant;
 public class TemplateSlide {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "template_slides_id_seq")
+    @SequenceGenerator(name = "template_slides_id_seq", sequenceName = "template_slides_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "template_id", nullable = false)
     private Template template;
 
-    // JSON String lưu trữ bố cục (vị trí, kích thước, styles) của các Elements
-    @Column(name = "layout_json", columnDefinition = "TEXT")
-    private String layoutJson; 
+    // JSON String lưu trữ bố cục (vị trí, kích thước, styles) của các Elements (jsonb)
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "layout_json", columnDefinition = "jsonb")
+    private String layoutJson;
 
     @Column(name = "slide_order")
     private Integer slideOrder; 
@@ -40,6 +40,10 @@ public class User {
     private Instant createdAt;
 
     private Instant updatedAt;
+
+    // Nhúng vào JWT (claim "stamp"); đổi giá trị này => mọi token đã cấp cho user bị từ chối (sau TTL của cache principal).
+    @Column(name = "security_stamp", length = 36)
+    private String securityStamp;
     
     // Các trường khác (ví dụ: role) có thể được thêm nếu cần
 }
\ No newline at end of file
@@ -1,8 +1,11 @@
 package com.hust.exception;
 
 import com.hust.dto.response.ErrorResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
@@ -46,6 +49,28 @@ public class GlobalExceptionHandler {
         return buildError(HttpStatus.CONFLICT, ex.getMessage(), request);
     }
 
+    // ========================================================================
+    // 2b. Version conflict (409) / If-Match không khớp (412): trả kèm phiên bản hiện tại trong ETag
+    // ========================================================================
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<ErrorResponse> handleVersionConflict(VersionConflictException ex, WebRequest request) {
+        HttpStatus status = ex instanceof PreconditionFailedException ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT;
+        ResponseEntity<ErrorResponse> response = buildError(status, ex.getMessage(), request);
+        response.getBody().setConflicts(ex.getConflicts());
+        if (ex.getCurrentVersion() == null) {
+            return response;
+        }
+        return ResponseEntity.status(status)
+                .eTag(String.valueOf(ex.getCurrentVersion()))
+                .body(response.getBody());
+    }
+
+    // Hai request cùng sửa 1 dòng: request ghi sau bị Hibernate từ chối khi flush.
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLock(ObjectOptimisticLockingFailureException ex, WebRequest request) {
+        return buildError(HttpStatus.CONFLICT, "他のユーザーが同時に更新しました。再読み込みしてください。", request);
+    }
+
     // ========================================================================
     // 3. Validation: @Valid trên DTO (400)
     // ========================================================================
@@ -128,6 +153,18 @@ public class GlobalExceptionHandler {
         return buildError(HttpStatus.BAD_REQUEST, ex.getMessage(), request);
     }
 
+    // ========================================================================
+    // 10b. Hàng đợi xử lý nền đầy (batch job / batch run) → 503, client thử lại sau
+    // ========================================================================
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<ErrorResponse> handleTaskRejected(TaskRejectedException ex, WebRequest request) {
+        ResponseEntity<ErrorResponse> response = buildError(HttpStatus.SERVICE_UNAVAILABLE,
+                "サーバーが混雑しています。しばらくしてから再度お試しください。", request);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(response.getBody());
+    }
+
     // ========================================================================
     // 11. Tất cả lỗi còn lại → 500
     // ========================================================================
@@ -152,7 +189,8 @@ public class GlobalExceptionHandler {
                 status.value(),
                 Instant.now(),
                 message,
-                request.getDescription(false)
+                request.getDescription(false),
+                null
         );
         return new ResponseEntity<>(error, status);
     }
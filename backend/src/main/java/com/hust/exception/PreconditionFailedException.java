@@ -0,0 +1,17 @@
+package com.hust.exception;
+
+import java.util.List;
+
+import com.hust.dto.response.SlideVersionResponse;
+
+// If-Match không khớp phiên bản hiện tại (412). Phiên bản hiện tại được trả về trong ETag (batch: trong conflicts).
+public class PreconditionFailedException extends VersionConflictException {
+
+    public PreconditionFailedException(String message, Long currentVersion) {
+        super(message, currentVersion);
+    }
+
+    public PreconditionFailedException(String message, Long currentVersion, List<SlideVersionResponse> conflicts) {
+        super(message, currentVersion, conflicts);
+    }
+}
@@ -0,0 +1,31 @@
+package com.hust.exception;
+
+import java.util.List;
+
+import com.hust.dto.response.SlideVersionResponse;
+
+// Phiên bản client gửi lên (If-Match) không khớp với phiên bản hiện tại trong DB.
+// Lưu batch: conflicts liệt kê phiên bản hiện tại của từng slide bị từ chối.
+public class VersionConflictException extends RuntimeException {
+
+    private final Long currentVersion;
+    private final List<SlideVersionResponse> conflicts;
+
+    public VersionConflictException(String message, Long currentVersion) {
+        this(message, currentVersion, null);
+    }
+
+    public VersionConflictException(String message, Long currentVersion, List<SlideVersionResponse> conflicts) {
+        super(message);
+        this.currentVersion = currentVersion;
+        this.conflicts = conflicts;
+    }
+
+    public Long getCurrentVersion() {
+        return currentVersion;
+    }
+
+    public List<SlideVersionResponse> getConflicts() {
+        return conflicts;
+    }
+}
@@ -0,0 +1,29 @@
+package com.hust.repository;
+
+import com.hust.entity.BatchRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface BatchRunRepository extends JpaRepository<BatchRun, Long> {
+
+    Optional<BatchRun> findByOwnerIdAndIdempotencyKey(Long ownerId, String idempotencyKey);
+
+    // Chiếm quyền chạy run: chỉ thành công nếu run không đang chạy (hoặc đã bị treo quá staleBefore).
+    @Modifying
+    @Transactional
+    @Query("update BatchRun r set r.status = 'RUNNING', r.errorMessage = null, r.updatedAt = :now "
+            + "where r.id = :id and (r.status <> 'RUNNING' or r.updatedAt < :staleBefore)")
+    int markRunning(@Param("id") Long id, @Param("now") Instant now, @Param("staleBefore") Instant staleBefore);
+
+    // Heartbeat sau mỗi chunk: run không được cập nhật quá lâu được coi là bị treo (có thể resume).
+    @Modifying
+    @Transactional
+    @Query("update BatchRun r set r.updatedAt = :now where r.id = :id")
+    int touch(@Param("id") Long id, @Param("now") Instant now);
+}
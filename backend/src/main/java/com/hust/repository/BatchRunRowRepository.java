@@ -0,0 +1,53 @@
+package com.hust.repository;
+
+import com.hust.entity.BatchRunRow;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface BatchRunRowRepository extends JpaRepository<BatchRunRow, Long> {
+
+    // Trạng thái dòng không kèm content (dùng cho API xem tiến độ).
+    interface RowSummary {
+        int getRowIndex();
+        String getName();
+        String getStatus();
+        String getErrorMessage();
+        Long getPresentationId();
+    }
+
+    <T> List<T> findByRunIdOrderByRowIndexAsc(Long runId, Class<T> type);
+
+    <T> List<T> findByRunIdAndStatusOrderByRowIndexAsc(Long runId, String status, Class<T> type);
+
+    List<BatchRunRow> findByRunIdAndStatusInOrderByRowIndexAsc(Long runId, Collection<String> statuses);
+
+    List<BatchRunRow> findByRunIdAndRowIndexIn(Long runId, Collection<Integer> rowIndexes);
+
+    long countByRunIdAndStatus(Long runId, String status);
+
+    @Query("select r.presentationId from BatchRunRow r where r.run.id = :runId and r.status = 'SUCCEEDED' "
+            + "and r.presentationId is not null order by r.rowIndex")
+    List<Long> findCreatedPresentationIds(@Param("runId") Long runId);
+
+    // Checkpoint: gọi bên trong transaction của chunk, commit cùng với presentation.
+    @Modifying
+    @Transactional
+    @Query("update BatchRunRow r set r.status = 'SUCCEEDED', r.presentationId = :presentationId, "
+            + "r.errorMessage = null, r.updatedAt = :now where r.run.id = :runId and r.rowIndex = :rowIndex")
+    int markSucceeded(@Param("runId") Long runId, @Param("rowIndex") int rowIndex,
+                      @Param("presentationId") Long presentationId, @Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("update BatchRunRow r set r.status = 'FAILED', r.errorMessage = :message, r.updatedAt = :now "
+            + "where r.run.id = :runId and r.rowIndex = :rowIndex and r.status <> 'SUCCEEDED'")
+    int markFailed(@Param("runId") Long runId, @Param("rowIndex") int rowIndex,
+                   @Param("message") String message, @Param("now") Instant now);
+}
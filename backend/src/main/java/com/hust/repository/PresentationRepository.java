@@ -1,11 +1,61 @@
 package com.hust.repository;
 
 import com.hust.entity.Presentation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 public interface PresentationRepository extends JpaRepository<Presentation, Long> {
 
-    // Lấy các dự án gần đây của một User, sắp xếp theo ngày chỉnh sửa giảm dần (No. 3)
-    List<Presentation> findByOwnerIdOrderByEditedDateDesc(Long ownerId);
-}
\ No newline at end of file
+    // Khóa dòng presentation: thêm / di chuyển slide trong cùng 1 deck chạy tuần tự
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from Presentation p where p.id = :id")
+    Optional<Presentation> findByIdForUpdate(@Param("id") Long id);
+
+    // Đủ để kiểm tra quyền + tính ETag mà không tải presentation/owner.
+    interface PresentationStamp {
+        Long getOwnerId();
+        Long getVersion();
+        Instant getEditedDate();
+    }
+
+    @Query("select p.owner.id as ownerId, p.version as version, p.editedDate as editedDate from Presentation p where p.id = :id")
+    Optional<PresentationStamp> findStampById(@Param("id") Long id);
+
+    @Modifying
+    @Query("update Presentation p set p.editedDate = :editedDate where p.id = :id")
+    int touchEditedDate(@Param("id") Long id, @Param("editedDate") Instant editedDate);
+
+    // Chỉ các cột cần cho danh sách (Dashboard), owner lấy bằng join trong cùng 1 query.
+    interface PresentationSummary {
+        Long getId();
+        String getTitle();
+        Instant getEditedDate();
+        String getOwnerUsername();
+    }
+
+    // Keyset pagination theo (edited_date, id) giảm dần, dùng index idx_presentations_owner_edited.
+    @Query("select p.id as id, p.title as title, p.editedDate as editedDate, o.username as ownerUsername "
+            + "from Presentation p join p.owner o "
+            + "where o.id = :ownerId "
+            + "order by p.editedDate desc, p.id desc")
+    List<PresentationSummary> findFirstPageByOwner(@Param("ownerId") Long ownerId, Pageable pageable);
+
+    @Query("select p.id as id, p.title as title, p.editedDate as editedDate, o.username as ownerUsername "
+            + "from Presentation p join p.owner o "
+            + "where o.id = :ownerId "
+            + "and (p.editedDate < :editedDate or (p.editedDate = :editedDate and p.id < :id)) "
+            + "order by p.editedDate desc, p.id desc")
+    List<PresentationSummary> findPageByOwnerAfter(@Param("ownerId") Long ownerId,
+                                                   @Param("editedDate") Instant editedDate,
+                                                   @Param("id") Long id,
+                                                   Pageable pageable);
+}
@@ -6,15 +6,183 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface SlideRepository extends JpaRepository<Slide, Long> {
 
     // Lấy tất cả slide thuộc về một Presentation, sắp xếp theo index
     List<Slide> findByPresentationIdOrderBySlideIndexAsc(Long presentationId);
     
-    // NEW: Đếm số lượng slide trong một Presentation (dùng để xác định index mới)
-    long countByPresentationIdOrderBySlideIndexAsc(Long presentationId);
+    // --- Khóa thứ tự thưa (slide_index) ---
+    @Query("select coalesce(max(s.slideIndex), 0) from Slide s where s.presentation.id = :presentationId and s.id <> :excludeId")
+    int findMaxSlideIndex(@Param("presentationId") Long presentationId, @Param("excludeId") Long excludeId);
+
+    // 2 khóa liền kề bắt đầu từ vị trí offset (bỏ qua slide đang di chuyển)
+    @Query(value = "SELECT slide_index FROM slides WHERE presentation_id = :presentationId AND id <> :excludeId "
+            + "ORDER BY slide_index, id LIMIT 2 OFFSET :offset", nativeQuery = true)
+    List<Integer> findAdjacentSlideIndexes(@Param("presentationId") Long presentationId,
+                                           @Param("excludeId") Long excludeId,
+                                           @Param("offset") int offset);
+
+    // Số thứ tự hiển thị = số slide đứng trước + 1
+    long countByPresentationIdAndSlideIndexLessThan(Long presentationId, Integer slideIndex);
+
+    @Modifying
+    @Query("update Slide s set s.slideIndex = :slideIndex where s.id = :slideId")
+    int updateSlideIndex(@Param("slideId") Long slideId, @Param("slideIndex") int slideIndex);
+
+    // Đánh số lại cả deck bằng 1 câu UPDATE khi 2 khóa liền kề không còn khoảng trống
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE slides s SET slide_index = r.rn * :gap "
+            + "FROM (SELECT id, row_number() OVER (ORDER BY slide_index, id) AS rn "
+            + "      FROM slides WHERE presentation_id = :presentationId) r "
+            + "WHERE s.id = r.id", nativeQuery = true)
+    int renumberSlideIndexes(@Param("presentationId") Long presentationId, @Param("gap") int gap);
+
+    // --- content_json (jsonb): đọc/ghi từng trường ngay trong SQL ---
+    interface SlideOwnership {
+        Long getPresentationId();
+        Long getOwnerId();
+        Long getVersion();
+    }
+
+    @Query("select s.presentation.id as presentationId, s.presentation.owner.id as ownerId, s.version as version "
+            + "from Slide s where s.id = :slideId")
+    Optional<SlideOwnership> findOwnershipById(@Param("slideId") Long slideId);
+
+    @Query("select s.version from Slide s where s.id = :slideId")
+    Optional<Long> findVersionById(@Param("slideId") Long slideId);
+
+    interface SlideContentVersion {
+        String getContentJson();
+        Long getVersion();
+    }
+
+    // PATCH: chỉ đọc document + version, không tải entity Slide / Presentation / owner.
+    @Query("select s.contentJson as contentJson, s.version as version from Slide s where s.id = :slideId")
+    Optional<SlideContentVersion> findContentVersionById(@Param("slideId") Long slideId);
+
+    // Các câu ghi content_json dưới đây là UPDATE có điều kiện theo version (optimistic locking) và trả về
+    // version mới bằng RETURNING: rỗng = slide không tồn tại hoặc version đã đổi. expectedVersion null = không kiểm tra.
+
+    // Giá trị content_json mới khi chỉ ghi title/content (tham số :title, :content): vào object `data`
+    // (hoặc root với JSON legacy) bằng jsonb_set. Dùng chung cho updateTitleAndContent và batch save (SlideService).
+    String TITLE_AND_CONTENT_JSON_SQL = "CASE "
+            + "WHEN content_json IS NULL OR jsonb_typeof(content_json) <> 'object' "
+            + "  THEN jsonb_build_object('data', jsonb_build_object('title', CAST(:title AS text), 'content', CAST(:content AS text))) "
+            + "WHEN jsonb_typeof(content_json -> 'data') = 'object' "
+            + "  THEN jsonb_set(jsonb_set(content_json, '{data,title}', to_jsonb(CAST(:title AS text))), "
+            + "                 '{data,content}', to_jsonb(CAST(:content AS text))) "
+            + "ELSE content_json || jsonb_build_object('title', CAST(:title AS text), 'content', CAST(:content AS text)) "
+            + "END";
+
+    // Ghi title/content bằng jsonb_set, không tải cả document về.
+    @Transactional
+    @Query(value = "UPDATE slides SET content_json = " + TITLE_AND_CONTENT_JSON_SQL + ", "
+            + "last_modified = :modifiedAt, version = version + 1 "
+            + "WHERE id = :slideId AND (CAST(:expectedVersion AS bigint) IS NULL OR version = CAST(:expectedVersion AS bigint)) "
+            + "RETURNING version", nativeQuery = true)
+    List<Long> updateTitleAndContent(@Param("slideId") Long slideId,
+                                     @Param("title") String title,
+                                     @Param("content") String content,
+                                     @Param("modifiedAt") Instant modifiedAt,
+                                     @Param("expectedVersion") Long expectedVersion);
+
+    // Ghi đè cả document, không cần tải entity.
+    @Transactional
+    @Query(value = "UPDATE slides SET content_json = CAST(:contentJson AS jsonb), last_modified = :modifiedAt, "
+            + "version = version + 1 "
+            + "WHERE id = :slideId AND (CAST(:expectedVersion AS bigint) IS NULL OR version = CAST(:expectedVersion AS bigint)) "
+            + "RETURNING version", nativeQuery = true)
+    List<Long> replaceContentJson(@Param("slideId") Long slideId,
+                                  @Param("contentJson") String contentJson,
+                                  @Param("modifiedAt") Instant modifiedAt,
+                                  @Param("expectedVersion") Long expectedVersion);
+
+    interface SlideVersion {
+        Long getId();
+        Long getVersion();
+    }
+
+    @Query("select s.id as id, s.version as version from Slide s where s.presentation.id = :presentationId and s.id in :slideIds")
+    List<SlideVersion> findVersions(@Param("presentationId") Long presentationId, @Param("slideIds") Collection<Long> slideIds);
+
+    // Dấu vân tay của danh sách slide (id, version, thứ tự) cho ETag: không đọc content_json.
+    @Query(value = "SELECT md5(COALESCE(string_agg(id || ':' || version || ':' || slide_index, ',' ORDER BY slide_index, id), '')) "
+            + "FROM slides WHERE presentation_id = :presentationId", nativeQuery = true)
+    String findListingFingerprint(@Param("presentationId") Long presentationId);
+
+    interface SlideOutline {
+        Long getId();
+        Integer getSlideIndex();
+        String getTitle();
+        Long getVersion();
+        String getThumbnailKey();
+    }
+
+    // Danh sách tiêu đề của deck: đọc cột sinh `title`, không đụng tới content_json.
+    @Query("select s.id as id, s.slideIndex as slideIndex, s.title as title, s.version as version, "
+            + "s.thumbnailKey as thumbnailKey "
+            + "from Slide s where s.presentation.id = :presentationId order by s.slideIndex, s.id")
+    List<SlideOutline> findOutlineByPresentationId(@Param("presentationId") Long presentationId);
+
+    interface SlideContentRow {
+        Long getId();
+        Integer getSlideIndex();
+        Long getVersion();
+        String getContentJson();
+    }
+
+    // Nội dung đầy đủ của 1 cửa sổ slide (theo id); slideIndex là số thứ tự hiển thị trong cả deck.
+    @Query(value = "SELECT x.id AS \"id\", x.ordinal AS \"slideIndex\", x.version AS \"version\", "
+            + "CAST(s.content_json AS text) AS \"contentJson\" "
+            + "FROM (SELECT id, version, row_number() OVER (ORDER BY slide_index, id) AS ordinal "
+            + "      FROM slides WHERE presentation_id = :presentationId) x "
+            + "JOIN slides s ON s.id = x.id "
+            + "WHERE x.id IN (:slideIds) ORDER BY x.ordinal", nativeQuery = true)
+    List<SlideContentRow> findContentWindow(@Param("presentationId") Long presentationId,
+                                            @Param("slideIds") Collection<Long> slideIds);
+
+    // --- Thumbnail (SlideThumbnailService) ---
+    interface SlideThumbnailSource {
+        Long getOwnerId();
+        String getPresentationTitle();
+        String getContentJson();
+        Long getVersion();
+        String getThumbnailKey();
+    }
+
+    @Query("select s.presentation.owner.id as ownerId, s.presentation.title as presentationTitle, "
+            + "s.contentJson as contentJson, s.version as version, s.thumbnailKey as thumbnailKey "
+            + "from Slide s where s.id = :slideId")
+    Optional<SlideThumbnailSource> findThumbnailSourceById(@Param("slideId") Long slideId);
+
+    interface SlideThumbnailRef {
+        Long getOwnerId();
+        String getThumbnailKey();
+    }
+
+    @Query("select s.presentation.owner.id as ownerId, s.thumbnailKey as thumbnailKey from Slide s where s.id = :slideId")
+    Optional<SlideThumbnailRef> findThumbnailRefById(@Param("slideId") Long slideId);
+
+    // Chỉ ghi khi slide chưa đổi kể từ lúc render (render cũ xong muộn không ghi đè bản mới); không tăng version.
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE slides SET thumbnail_key = :thumbnailKey WHERE id = :slideId AND version = :version", nativeQuery = true)
+    int updateThumbnailKey(@Param("slideId") Long slideId,
+                           @Param("version") Long version,
+                           @Param("thumbnailKey") String thumbnailKey);
+
+    boolean existsByThumbnailKey(String thumbnailKey);
+
+    // Khóa nào trong danh sách còn được slide trỏ tới (dọn file thumbnail không còn dùng).
+    @Query("select distinct s.thumbnailKey from Slide s where s.thumbnailKey in :keys")
+    List<String> findReferencedThumbnailKeys(@Param("keys") Collection<String> keys);
 
     // Bulk detach/reassign layoutUsed to avoid FK violations when deleting TemplateSlide.
     @Modifying
@@ -3,17 +3,22 @@ package com.hust.repository;
 import com.hust.entity.Template;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 public interface TemplateRepository extends JpaRepository<Template, Long> {
 
     // Lấy tất cả Template được đánh dấu là public (khu vực Công khai)
         // Use JOIN to guarantee owner exists and avoid legacy bad rows causing 500.
+        // JOIN FETCH: ownerUsername được lấy cùng query, không lazy-load owner cho từng template.
         @Query("""
             select t from Template t
-            join t.owner o
+            join fetch t.owner o
             where t.isPublic = true
             order by coalesce(t.editedAt, t.createdAt) desc
             """)
@@ -22,13 +27,68 @@ public interface TemplateRepository extends JpaRepository<Template, Long> {
     // Lấy các Template của một User (khu vực Tự tạo) và chưa bị xóa mềm
         @Query("""
             select t from Template t
-            join t.owner o
+            join fetch t.owner o
             where o.id = :ownerId
               and t.isDeleted = false
             order by coalesce(t.editedAt, t.createdAt) desc
             """)
         List<Template> findMineTemplatesOrderByRecency(@Param("ownerId") Long ownerId);
     
+    // Quyền xem + thời điểm sửa cuối (ETag của GET /api/templates/{id}/slides)
+    interface TemplateStamp {
+        Boolean getIsPublic();
+        Long getOwnerId();
+        Instant getCreatedAt();
+        Instant getEditedAt();
+    }
+
+    @Query("select t.isPublic as isPublic, o.id as ownerId, t.createdAt as createdAt, t.editedAt as editedAt "
+            + "from Template t left join t.owner o where t.id = :id")
+    Optional<TemplateStamp> findStampById(@Param("id") Long id);
+
+    // Nguồn ảnh cho GET /api/templates/{id}/preview (không tải owner)
+    interface TemplatePreviewSource {
+        Boolean getIsPublic();
+        Long getOwnerId();
+        String getTheme();
+        String getPreviewImageUrl();
+        String getPreviewHash();
+        Boolean getPreviewGenerated();
+    }
+
+    @Query("select t.isPublic as isPublic, o.id as ownerId, t.theme as theme, "
+            + "t.previewImageUrl as previewImageUrl, t.previewHash as previewHash, t.previewGenerated as previewGenerated "
+            + "from Template t left join t.owner o where t.id = :id")
+    Optional<TemplatePreviewSource> findPreviewSourceById(@Param("id") Long id);
+
+    // Thumbnail raster (TemplateThumbnailService)
+    interface TemplateRenderSource {
+        String getName();
+        String getTheme();
+        Boolean getPreviewGenerated();
+        String getPreviewImageUrl();
+        String getPreviewHash();
+        Instant getEditedAt();
+    }
+
+    @Query("select t.name as name, t.theme as theme, t.previewGenerated as previewGenerated, "
+            + "t.previewImageUrl as previewImageUrl, t.previewHash as previewHash, t.editedAt as editedAt "
+            + "from Template t where t.id = :id")
+    Optional<TemplateRenderSource> findRenderSourceById(@Param("id") Long id);
+
+    // Compare-and-set: chỉ ghi khi preview và editedAt vẫn như lúc bắt đầu render; không đổi editedAt.
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE templates SET preview_image_url = :preview, preview_hash = :hash, preview_generated = true "
+            + "WHERE id = :id AND preview_generated IS NOT FALSE "
+            + "AND preview_hash IS NOT DISTINCT FROM CAST(:expectedHash AS varchar) "
+            + "AND edited_at IS NOT DISTINCT FROM CAST(:expectedEditedAt AS timestamptz)", nativeQuery = true)
+    int updateGeneratedPreview(@Param("id") Long id,
+                               @Param("preview") String preview,
+                               @Param("hash") String hash,
+                               @Param("expectedHash") String expectedHash,
+                               @Param("expectedEditedAt") Instant expectedEditedAt);
+
     // Lấy tất cả Template (dùng cho mục đích quản trị hoặc toàn hệ thống)
     List<Template> findAll();
 }
\ No newline at end of file
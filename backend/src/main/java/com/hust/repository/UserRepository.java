@@ -2,6 +2,8 @@ package com.hust.repository;
 
 import com.hust.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -15,4 +17,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // Dùng cho đăng nhập (có thể dùng username hoặc email)
     // Spring Data JPA sẽ dịch thành WHERE username = ?1 OR email = ?2
     Optional<User> findByUsernameOrEmail(String username, String email);
-}
\ No newline at end of file
+
+    // Kiểm tra claim "stamp" của JWT (AuthenticatedUserCache): chỉ đọc 1 cột.
+    @Query("select u.securityStamp from User u where u.id = :id")
+    Optional<String> findSecurityStampById(@Param("id") Long id);
+}
@@ -0,0 +1,47 @@
+package com.hust.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Principal dựng từ claim của JWT (sub, uid, stamp): không cần tải User từ DB cho mỗi request.
+ * SecurityUtil.getCurrentUserId() đọc id trực tiếp từ đây.
+ */
+public class AuthenticatedUser implements UserDetails {
+
+    private final Long id;
+    private final String username;
+    private final String securityStamp;
+
+    public AuthenticatedUser(Long id, String username, String securityStamp) {
+        this.id = id;
+        this.username = username;
+        this.securityStamp = securityStamp;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getSecurityStamp() {
+        return securityStamp;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String getPassword() {
+        return null; // Xác thực bằng JWT, không giữ mật khẩu trong principal
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return Collections.emptyList();
+    }
+}
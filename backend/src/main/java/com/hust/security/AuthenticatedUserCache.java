@@ -0,0 +1,64 @@
+package com.hust.security;
+
+import com.hust.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache nhỏ (userId -> security stamp hiện tại) để kiểm tra thu hồi token mà không query DB mỗi request.
+ * Entry sống {@code jwt.principal-cache.ttl-seconds}: đổi users.security_stamp có hiệu lực tối đa sau khoảng này
+ * ({@link #evict} được gọi khi stamp đổi để có hiệu lực ngay trên instance hiện tại).
+ */
+@Component
+public class AuthenticatedUserCache {
+
+    // stamp == null: user không tồn tại / chưa có stamp => mọi token có claim stamp đều bị từ chối.
+    private record Entry(String stamp, long expiresAt) {
+    }
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    @Autowired private UserRepository userRepository;
+
+    @Value("${jwt.principal-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    // Giới hạn đơn giản: vượt ngưỡng thì xóa hết, user đang hoạt động sẽ được nạp lại.
+    @Value("${jwt.principal-cache.max-entries:10000}")
+    private int maxEntries;
+
+    /** Stamp trong token còn khớp với stamp hiện tại của user. */
+    public boolean isCurrent(Long userId, String stamp) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(userId);
+        if (entry == null || entry.expiresAt() <= now) {
+            entry = new Entry(userRepository.findSecurityStampById(userId).orElse(null), now + ttlSeconds * 1000);
+            if (entries.size() >= maxEntries) {
+                entries.clear();
+            }
+            entries.put(userId, entry);
+        }
+        return entry.stamp() != null && Objects.equals(entry.stamp(), stamp);
+    }
+
+    /** Gọi khi đổi security stamp (AuthService.logoutAll): xóa entry sau khi transaction ghi commit. */
+    public void evict(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    entries.remove(userId);
+                }
+            });
+        } else {
+            entries.remove(userId);
+        }
+    }
+}
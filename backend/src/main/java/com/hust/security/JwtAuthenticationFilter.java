@@ -1,6 +1,7 @@
 package com.hust.security;
 
 import com.hust.service.CustomUserDetailsService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -28,14 +29,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private CustomUserDetailsService userDetailsService;
 
+    @Autowired
+    private AuthenticatedUserCache authenticatedUserCache;
+
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
 
         String path = request.getServletPath();
 
-        // Bỏ qua JWT cho login/register
-        if (path.startsWith("/auth/")) {
+        // Bỏ qua JWT cho login/register (các endpoint /auth/ khác như logout-all cần biết user hiện tại)
+        if (path.equals("/auth/login") || path.equals("/auth/register")) {
             filterChain.doFilter(request, response);
             return;
         }
@@ -43,34 +50,34 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
 
         final String authorizationHeader = request.getHeader("Authorization");
-        String username = null;
-        String jwt = null;
+        Claims claims = null;
 
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
+            String jwt = authorizationHeader.substring(7);
 
             try {
-                username = jwtUtil.extractUsername(jwt);
+                claims = verifiedTokenCache.verify(jwt);
             } catch (Exception e) {
                 logger.warn("JWTトークンが無効、または期限切れです: " + e.getMessage());
             }
         }
 
+        String username = claims != null ? claims.getSubject() : null;
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             try {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-
-                // If we can extract the subject (signature OK, not expired) and load the user,
-                // we accept the token for authentication.
-                UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(
-                                userDetails, null, userDetails.getAuthorities());
-
-                authentication.setDetails(
-                        new WebAuthenticationDetailsSource().buildDetails(request)
-                );
-
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                UserDetails userDetails = resolvePrincipal(claims, username);
+                if (userDetails != null) {
+                    // Signature OK, not expired, and the principal is still valid => accept the token.
+                    UsernamePasswordAuthenticationToken authentication =
+                            new UsernamePasswordAuthenticationToken(
+                                    userDetails, null, userDetails.getAuthorities());
+
+                    authentication.setDetails(
+                            new WebAuthenticationDetailsSource().buildDetails(request)
+                    );
+
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
             } catch (UsernameNotFoundException ex) {
                 // Treat as invalid token → no auth; Security will return 401/403
                 logger.warn("JWT subject のユーザーが見つかりません: {}", username);
@@ -81,4 +88,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    // Token có uid + stamp: principal dựng từ claim, chỉ kiểm tra stamp qua cache (thường không query DB).
+    // Token cũ (cấp trước khi có 2 claim này): tải user theo subject như trước. null = token đã bị thu hồi.
+    private UserDetails resolvePrincipal(Claims claims, String username) {
+        Object uid = claims.get(JwtUtil.CLAIM_USER_ID);
+        String stamp = claims.get(JwtUtil.CLAIM_SECURITY_STAMP, String.class);
+        if (uid instanceof Number number && stamp != null) {
+            Long userId = number.longValue();
+            if (!authenticatedUserCache.isCurrent(userId, stamp)) {
+                logger.warn("JWT は失効しています (security stamp 不一致): userId={}", userId);
+                return null;
+            }
+            return new AuthenticatedUser(userId, username, stamp);
+        }
+        return this.userDetailsService.loadUserByUsername(username);
+    }
 }
@@ -20,6 +20,10 @@ import io.jsonwebtoken.security.Keys;
 @Component
 public class JwtUtil {
 
+    // Claim bổ sung: id user và security stamp (JwtAuthenticationFilter dựng principal từ đây, không tra DB).
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_SECURITY_STAMP = "stamp";
+
     @Value("${jwt.secret}")
     private String SECRET_KEY;
 
@@ -31,7 +35,8 @@ public class JwtUtil {
         return Keys.hmacShaKeyFor(keyBytes);
     }
 
-    private Claims extractAllClaims(String token) {
+    /** Kiểm tra chữ ký + hạn và trả về toàn bộ claim (1 lần parse cho mỗi request). */
+    public Claims extractAllClaims(String token) {
         return Jwts.parser()
                 .setSigningKey(getSigningKey())
                 .build()
@@ -48,8 +53,10 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
 
-    public String generateToken(String username) {
+    public String generateToken(String username, Long userId, String securityStamp) {
         Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_USER_ID, userId);
+        claims.put(CLAIM_SECURITY_STAMP, securityStamp);
         return createToken(claims, username);
     }
 
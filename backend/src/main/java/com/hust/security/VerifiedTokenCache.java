@@ -0,0 +1,111 @@
+package com.hust.security;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache các bearer token đã kiểm tra chữ ký: editor (autosave, filmstrip) gửi cùng 1 token hàng trăm lần mỗi phiên,
+ * lần lặp lại lấy claim từ cache thay vì parse + verify HMAC lại.
+ * - Khóa là SHA-256 của token (không giữ token gốc trong bộ nhớ).
+ * - Entry hết hạn đúng theo claim exp của token; token không hợp lệ không bao giờ được cache.
+ * - Thu hồi token vẫn do {@link AuthenticatedUserCache} (security stamp) kiểm tra ở mỗi request.
+ * Số hit/miss xem qua JMX (bean "quickslide:name=verifiedTokenCache").
+ */
+@Component
+@ManagedResource(objectName = "quickslide:name=verifiedTokenCache", description = "Verified JWT cache")
+public class VerifiedTokenCache {
+
+    private record Entry(Claims claims, long expiresAt) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder clears = new LongAdder();
+
+    @Autowired private JwtUtil jwtUtil;
+
+    // Giới hạn đơn giản: vượt ngưỡng thì xóa hết, token đang dùng sẽ được verify lại 1 lần.
+    @Value("${jwt.token-cache.max-entries:10000}")
+    private int maxEntries;
+
+    /** Claim của token đã được kiểm tra chữ ký và hạn; token không hợp lệ => exception của jjwt như {@link JwtUtil#extractAllClaims}. */
+    public Claims verify(String token) {
+        String key = digest(token);
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.expiresAt() > now) {
+                hits.increment();
+                return entry.claims();
+            }
+            entries.remove(key, entry);
+        }
+
+        misses.increment();
+        Claims claims = jwtUtil.extractAllClaims(token);
+        // Token không có exp: không cache (không biết khi nào phải bỏ).
+        if (claims.getExpiration() != null) {
+            if (entries.size() >= maxEntries) {
+                entries.clear();
+                clears.increment();
+            }
+            entries.put(key, new Entry(claims, claims.getExpiration().getTime()));
+        }
+        return claims;
+    }
+
+    @ManagedAttribute(description = "Requests served from the cache")
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @ManagedAttribute(description = "Requests that verified the token signature")
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @ManagedAttribute(description = "Hit ratio (0..1)")
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    @ManagedAttribute(description = "Times the cache was cleared after reaching max-entries")
+    public long getClears() {
+        return clears.sum();
+    }
+
+    @ManagedAttribute(description = "Cached tokens")
+    public int getSize() {
+        return entries.size();
+    }
+
+    @ManagedOperation(description = "Drop all cached tokens")
+    public void clear() {
+        entries.clear();
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.hust.entity.User;
 import com.hust.exception.DuplicateException;
 import com.hust.exception.ResourceNotFoundException;
 import com.hust.repository.UserRepository;
+import com.hust.security.AuthenticatedUserCache;
 import com.hust.security.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -15,6 +16,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.Instant;
+import java.util.UUID;
 
 @Service
 public class AuthService {
@@ -31,6 +33,9 @@ public class AuthService {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private AuthenticatedUserCache authenticatedUserCache;
+
     // --- REGISTER (Sửa tham số đầu vào thành RegisterRequest) ---
     @Transactional
     public AuthResponse register(RegisterRequest request) { // [SỬA 2] Đổi AuthRequest -> RegisterRequest
@@ -57,10 +62,11 @@ public class AuthService {
         user.setPasswordHash(passwordEncoder.encode(request.getPassword()));
         user.setCreatedAt(Instant.now());
         user.setUpdatedAt(Instant.now());
+        user.setSecurityStamp(UUID.randomUUID().toString());
 
         User savedUser = userRepository.save(user);
 
-        String token = jwtUtil.generateToken(savedUser.getUsername());
+        String token = jwtUtil.generateToken(savedUser.getUsername(), savedUser.getId(), savedUser.getSecurityStamp());
 
         return new AuthResponse(
                 token,
@@ -82,7 +88,13 @@ public class AuthService {
             throw new IllegalArgumentException("ユーザー名またはパスワードが正しくありません");
         }
 
-        String token = jwtUtil.generateToken(user.getUsername());
+        // User cũ chưa có security stamp: tạo 1 lần khi đăng nhập.
+        if (user.getSecurityStamp() == null) {
+            user.setSecurityStamp(UUID.randomUUID().toString());
+            user = userRepository.save(user);
+        }
+
+        String token = jwtUtil.generateToken(user.getUsername(), user.getId(), user.getSecurityStamp());
 
         return new AuthResponse(
                 token,
@@ -91,4 +103,17 @@ public class AuthService {
             "ログインに成功しました"
         );
     }
-}
\ No newline at end of file
+
+    // --- LOGOUT ALL: đổi security stamp => mọi token đã cấp cho user (có claim stamp) hết hiệu lực ---
+    // Token cấp trước khi có claim stamp không bị ảnh hưởng, hết hạn theo jwt.expiration.
+    @Transactional
+    public void logoutAll(Long userId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("ユーザーが存在しません。"));
+
+        user.setSecurityStamp(UUID.randomUUID().toString());
+        user.setUpdatedAt(Instant.now());
+        userRepository.save(user);
+        authenticatedUserCache.evict(userId);
+    }
+}
@@ -0,0 +1,217 @@
+package com.hust.service;
+
+import com.hust.dto.request.BatchGenerateRequest;
+import com.hust.dto.response.BatchJobResponse;
+import com.hust.dto.response.PresentationResponse;
+import com.hust.exception.ResourceNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Chạy tạo slide hàng loạt dưới dạng job nền.
+ * - Request chỉ validate + đăng ký job rồi trả về ngay (202).
+ * - Job ghi theo chunk qua {@link BatchService#executeBatch}, cập nhật tiến độ sau mỗi chunk.
+ * - Client theo dõi qua GET status (polling, lấy kết quả theo offset) hoặc SSE.
+ * Trạng thái job giữ trong bộ nhớ, tự dọn sau {@code batch.job-retention-minutes}.
+ */
+@Service
+@Slf4j
+public class BatchJobService {
+
+    public enum JobStatus { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    private static class BatchJob {
+        final String id;
+        final Long ownerId;
+        final int totalRows;
+        final List<PresentationResponse> created = new CopyOnWriteArrayList<>();
+        final List<String> warnings = new CopyOnWriteArrayList<>();
+        final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        volatile JobStatus status = JobStatus.QUEUED;
+        volatile int processedRows;
+        volatile String errorMessage;
+        volatile Instant startedAt;
+        volatile Instant finishedAt;
+
+        BatchJob(String id, Long ownerId, int totalRows) {
+            this.id = id;
+            this.ownerId = ownerId;
+            this.totalRows = totalRows;
+        }
+
+        boolean isFinished() {
+            return status == JobStatus.COMPLETED || status == JobStatus.FAILED;
+        }
+    }
+
+    @Autowired private BatchService batchService;
+
+    @Autowired
+    @Qualifier("batchTaskExecutor")
+    private TaskExecutor batchTaskExecutor;
+
+    @Value("${batch.job-retention-minutes:60}")
+    private long retentionMinutes;
+
+    private static final long SSE_TIMEOUT_MS = Duration.ofMinutes(30).toMillis();
+
+    private final Map<String, BatchJob> jobs = new ConcurrentHashMap<>();
+
+    // --- 1. Đăng ký job (POST /api/batch/jobs) ---
+    public BatchJobResponse submit(BatchGenerateRequest request, Long currentUserId) {
+        evictExpiredJobs();
+
+        // Validate đồng bộ: dữ liệu lỗi vẫn trả về 400 ngay, không tạo job.
+        BatchService.BatchPlan plan = batchService.prepareBatch(request, currentUserId);
+
+        BatchJob job = new BatchJob(UUID.randomUUID().toString(), currentUserId, plan.getTotalRows());
+        job.warnings.addAll(plan.getWarnings());
+        jobs.put(job.id, job);
+
+        try {
+            batchTaskExecutor.execute(() -> run(job, plan));
+        } catch (TaskRejectedException e) {
+            // Hàng đợi đầy: client chưa nhận jobId nên bỏ job khỏi map thay vì để QUEUED mãi (=> 503).
+            jobs.remove(job.id);
+            throw e;
+        }
+        return toResponse(job, 0);
+    }
+
+    // --- 2. Xem trạng thái + kết quả từ offset (GET /api/batch/jobs/{jobId}?from=N) ---
+    public BatchJobResponse getStatus(String jobId, int fromOffset, Long currentUserId) {
+        return toResponse(findOwnedJob(jobId, currentUserId), fromOffset);
+    }
+
+    // --- 3. Đăng ký nhận tiến độ qua SSE (GET /api/batch/jobs/{jobId}/events) ---
+    public SseEmitter subscribe(String jobId, Long currentUserId) {
+        BatchJob job = findOwnedJob(jobId, currentUserId);
+
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+        emitter.onCompletion(() -> job.emitters.remove(emitter));
+        emitter.onTimeout(() -> job.emitters.remove(emitter));
+        emitter.onError(e -> job.emitters.remove(emitter));
+
+        // Gửi snapshot hiện tại trước (bao gồm mọi kết quả đã có), sau đó chỉ gửi phần mới.
+        try {
+            emitter.send(SseEmitter.event().name(eventName(job)).data(toResponse(job, 0)));
+            if (job.isFinished()) {
+                emitter.complete();
+                return emitter;
+            }
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+
+        job.emitters.add(emitter);
+        // Job có thể đã kết thúc giữa lúc gửi snapshot và đăng ký emitter.
+        if (job.isFinished() && job.emitters.remove(emitter)) {
+            sendQuietly(emitter, job, job.created.size());
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    private void run(BatchJob job, BatchService.BatchPlan plan) {
+        job.status = JobStatus.RUNNING;
+        job.startedAt = Instant.now();
+        try {
+            batchService.executeBatch(plan, (chunkCreated, rowsDone) -> {
+                int offset = job.created.size();
+                job.created.addAll(chunkCreated);
+                job.processedRows = rowsDone;
+                broadcast(job, offset);
+            });
+            job.status = JobStatus.COMPLETED;
+        } catch (Exception e) {
+            log.error("Batch job {} failed after {} rows", job.id, job.processedRows, e);
+            job.errorMessage = e.getMessage();
+            job.status = JobStatus.FAILED;
+        } finally {
+            job.finishedAt = Instant.now();
+            broadcast(job, job.created.size());
+            for (SseEmitter emitter : job.emitters) {
+                emitter.complete();
+            }
+            job.emitters.clear();
+        }
+    }
+
+    private void broadcast(BatchJob job, int fromOffset) {
+        for (SseEmitter emitter : job.emitters) {
+            if (!sendQuietly(emitter, job, fromOffset)) {
+                job.emitters.remove(emitter);
+            }
+        }
+    }
+
+    private boolean sendQuietly(SseEmitter emitter, BatchJob job, int fromOffset) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName(job)).data(toResponse(job, fromOffset)));
+            return true;
+        } catch (Exception e) {
+            // Client đã ngắt kết nối: job vẫn tiếp tục, client có thể polling lại.
+            return false;
+        }
+    }
+
+    private String eventName(BatchJob job) {
+        return switch (job.status) {
+            case COMPLETED -> "completed";
+            case FAILED -> "failed";
+            default -> "progress";
+        };
+    }
+
+    private BatchJob findOwnedJob(String jobId, Long currentUserId) {
+        BatchJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new ResourceNotFoundException("バッチジョブが存在しません: " + jobId);
+        }
+        if (!job.ownerId.equals(currentUserId)) {
+            throw new SecurityException("このバッチジョブにアクセスする権限がありません。");
+        }
+        return job;
+    }
+
+    private void evictExpiredJobs() {
+        Instant threshold = Instant.now().minus(Duration.ofMinutes(retentionMinutes));
+        jobs.values().removeIf(j -> j.isFinished() && j.finishedAt != null && j.finishedAt.isBefore(threshold));
+    }
+
+    private BatchJobResponse toResponse(BatchJob job, int fromOffset) {
+        List<PresentationResponse> all = job.created;
+        int size = all.size();
+        int from = Math.max(0, Math.min(fromOffset, size));
+        return BatchJobResponse.builder()
+                .jobId(job.id)
+                .status(job.status.name())
+                .totalRows(job.totalRows)
+                .processedRows(job.processedRows)
+                .createdCount(size)
+                .warnings(new ArrayList<>(job.warnings))
+                .created(new ArrayList<>(all.subList(from, size)))
+                .nextOffset(size)
+                .errorMessage(job.errorMessage)
+                .startedAt(job.startedAt)
+                .finishedAt(job.finishedAt)
+                .build();
+    }
+}
@@ -0,0 +1,346 @@
+package com.hust.service;
+
+import com.hust.dto.request.BatchGenerateRequest;
+import com.hust.dto.request.BatchResumeRequest;
+import com.hust.dto.response.BatchRunResponse;
+import com.hust.dto.response.PresentationResponse;
+import com.hust.dto.response.SlideDataDTO;
+import com.hust.entity.BatchRun;
+import com.hust.entity.BatchRunRow;
+import com.hust.entity.User;
+import com.hust.exception.DuplicateException;
+import com.hust.exception.ResourceNotFoundException;
+import com.hust.repository.BatchRunRepository;
+import com.hust.repository.BatchRunRowRepository;
+import com.hust.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Batch run có checkpoint theo dòng:
+ * - Mỗi dòng được lưu (batch_run_rows) với trạng thái PENDING / SUCCEEDED / FAILED.
+ * - Dòng lỗi không làm rollback các dòng khác; trạng thái SUCCEEDED được commit cùng
+ *   transaction với presentation tương ứng, nên chạy lại không bao giờ tạo trùng.
+ * - Resume chỉ xử lý lại các dòng PENDING / FAILED (có thể kèm sửa dòng lỗi).
+ * - Idempotency-Key: gửi lại cùng key trả về run đã có thay vì tạo run mới.
+ */
+@Service
+@Slf4j
+public class BatchRunService {
+
+    public static final String RUN_RUNNING = "RUNNING";
+    public static final String RUN_COMPLETED = "COMPLETED";
+    public static final String RUN_PARTIAL = "PARTIAL";
+    public static final String RUN_FAILED = "FAILED";
+
+    public static final String ROW_PENDING = "PENDING";
+    public static final String ROW_SUCCEEDED = "SUCCEEDED";
+    public static final String ROW_FAILED = "FAILED";
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    @Autowired private BatchService batchService;
+    @Autowired private BatchRunRepository batchRunRepository;
+    @Autowired private BatchRunRowRepository batchRunRowRepository;
+    @Autowired private UserRepository userRepository;
+
+    @Autowired
+    @Qualifier("batchTaskExecutor")
+    private TaskExecutor batchTaskExecutor;
+
+    // Run ở trạng thái RUNNING mà không có heartbeat quá thời gian này được coi là bị treo (server restart, ...)
+    @Value("${batch.run-stale-minutes:30}")
+    private long staleMinutes;
+
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // --- 1. Tạo run (POST /api/batch/runs, header Idempotency-Key) ---
+    public BatchRunResponse start(BatchGenerateRequest request, String idempotencyKey, Long currentUserId) {
+        String key = normalizeKey(idempotencyKey);
+
+        BatchRun existing = batchRunRepository.findByOwnerIdAndIdempotencyKey(currentUserId, key).orElse(null);
+        if (existing != null) {
+            return toResponse(existing, null);
+        }
+
+        User owner = userRepository.findById(currentUserId)
+                .orElseThrow(() -> new ResourceNotFoundException("ユーザーが存在しません。"));
+        List<SlideDataDTO> input = batchService.resolveInputRows(request, currentUserId);
+
+        BatchRun run;
+        try {
+            run = transactionTemplate.execute(status -> createRun(owner, key, request, input));
+        } catch (DataIntegrityViolationException e) {
+            // Request trùng key gửi đồng thời: trả về run đã được tạo bởi request kia.
+            return batchRunRepository.findByOwnerIdAndIdempotencyKey(currentUserId, key)
+                    .map(r -> toResponse(r, null))
+                    .orElseThrow(() -> e);
+        }
+
+        submit(run.getId(), currentUserId);
+        return toResponse(run, null);
+    }
+
+    // --- 2. Xem trạng thái run (GET /api/batch/runs/{runId}?status=FAILED) ---
+    public BatchRunResponse getRun(Long runId, String rowStatus, Long currentUserId) {
+        return toResponse(findOwnedRun(runId, currentUserId), rowStatus);
+    }
+
+    // --- 3. Chạy lại các dòng PENDING / FAILED (POST /api/batch/runs/{runId}/resume) ---
+    public BatchRunResponse resume(Long runId, BatchResumeRequest request, Long currentUserId) {
+        BatchRun run = findOwnedRun(runId, currentUserId);
+        List<BatchGenerateRequest.RowEdit> edits =
+                (request != null && request.getRowEdits() != null) ? request.getRowEdits() : List.of();
+
+        // Kiểm tra sửa đổi trước khi chiếm quyền chạy.
+        Map<Integer, BatchRunRow> editable = new HashMap<>();
+        if (!edits.isEmpty()) {
+            List<Integer> indexes = edits.stream()
+                    .filter(e -> e != null && e.getIndex() != null)
+                    .map(BatchGenerateRequest.RowEdit::getIndex)
+                    .toList();
+            for (BatchRunRow row : batchRunRowRepository.findByRunIdAndRowIndexIn(runId, indexes)) {
+                editable.put(row.getRowIndex(), row);
+            }
+            for (Integer index : indexes) {
+                BatchRunRow row = editable.get(index);
+                if (row == null) {
+                    throw new IllegalArgumentException("編集対象の行が存在しません: " + index);
+                }
+                if (ROW_SUCCEEDED.equals(row.getStatus())) {
+                    throw new IllegalArgumentException("作成済みの行は編集できません: " + index);
+                }
+            }
+        }
+
+        Instant now = Instant.now();
+        if (batchRunRepository.markRunning(runId, now, now.minus(Duration.ofMinutes(staleMinutes))) == 0) {
+            throw new DuplicateException("このバッチ実行は処理中です。");
+        }
+
+        if (!edits.isEmpty()) {
+            List<BatchRunRow> changed = new ArrayList<>();
+            for (BatchGenerateRequest.RowEdit edit : edits) {
+                if (edit == null || edit.getIndex() == null) continue;
+                BatchRunRow row = editable.get(edit.getIndex());
+                if (edit.getName() != null) row.setName(edit.getName());
+                if (edit.getContent() != null) row.setContent(edit.getContent());
+                row.setInputError(false);
+                row.setStatus(ROW_PENDING);
+                row.setErrorMessage(null);
+                row.setUpdatedAt(now);
+                changed.add(row);
+            }
+            batchRunRowRepository.saveAll(changed);
+        }
+
+        submit(runId, currentUserId);
+        return toResponse(findOwnedRun(runId, currentUserId), null);
+    }
+
+    private BatchRun createRun(User owner, String key, BatchGenerateRequest request, List<SlideDataDTO> input) {
+        Instant now = Instant.now();
+        BatchRun run = new BatchRun();
+        run.setOwner(owner);
+        run.setIdempotencyKey(key);
+        run.setTemplateId(request.getTemplateId());
+        run.setTemplateSlideId(request.getTemplateSlideId());
+        run.setStatus(RUN_RUNNING);
+        run.setTotalRows(input.size());
+        run.setCreatedAt(now);
+        run.setUpdatedAt(now);
+        BatchRun savedRun = batchRunRepository.saveAndFlush(run);
+
+        List<BatchRunRow> rows = new ArrayList<>(input.size());
+        for (int i = 0; i < input.size(); i++) {
+            SlideDataDTO data = input.get(i);
+            BatchRunRow row = new BatchRunRow();
+            row.setRun(savedRun);
+            row.setRowIndex(i);
+            row.setName(data.getName());
+            row.setContent(data.getContent());
+            if (data.isError()) {
+                row.setInputError(true);
+                row.setStatus(ROW_FAILED);
+                row.setErrorMessage(data.getErrorMessage() != null
+                        ? data.getErrorMessage()
+                        : "スライドのタイトルまたは内容を空にできません。");
+            } else {
+                row.setStatus(ROW_PENDING);
+            }
+            row.setUpdatedAt(now);
+            rows.add(row);
+        }
+        batchRunRowRepository.saveAll(rows);
+        return savedRun;
+    }
+
+    private void submit(Long runId, Long ownerId) {
+        try {
+            batchTaskExecutor.execute(() -> process(runId, ownerId));
+        } catch (TaskRejectedException e) {
+            // Hàng đợi đầy: run dừng ở trạng thái FAILED, các dòng vẫn PENDING nên có thể resume sau.
+            finish(runId, "サーバーが混雑しているため処理を開始できません。後で再開してください。");
+            throw e;
+        }
+    }
+
+    private void process(Long runId, Long ownerId) {
+        String runError = null;
+        try {
+            BatchRun run = batchRunRepository.findById(runId)
+                    .orElseThrow(() -> new ResourceNotFoundException("バッチ実行が存在しません: " + runId));
+
+            List<BatchRunRow> todo = batchRunRowRepository.findByRunIdAndStatusInOrderByRowIndexAsc(
+                    runId, List.of(ROW_PENDING, ROW_FAILED));
+            // Dòng lỗi từ dữ liệu gốc (chưa được sửa) giữ nguyên trạng thái FAILED.
+            todo.removeIf(BatchRunRow::isInputError);
+            if (todo.isEmpty()) return;
+
+            List<Integer> indexes = new ArrayList<>(todo.size());
+            List<SlideDataDTO> input = new ArrayList<>(todo.size());
+            for (BatchRunRow row : todo) {
+                indexes.add(row.getRowIndex());
+                input.add(toSlideData(row));
+            }
+
+            BatchService.BatchPlan plan = batchService.prepareRows(
+                    ownerId, run.getTemplateId(), run.getTemplateSlideId(), indexes, input);
+
+            for (BatchService.RowFailure failure : plan.getFailures()) {
+                batchRunRowRepository.markFailed(runId, failure.sourceIndex(), failure.message(), Instant.now());
+            }
+
+            batchService.executeBatch(plan,
+                    (created, rowsDone) -> batchRunRepository.touch(runId, Instant.now()),
+                    new BatchService.RowTracker() {
+                        @Override
+                        public void onRowsPersisted(List<Integer> sourceIndexes, List<PresentationResponse> created) {
+                            Instant now = Instant.now();
+                            for (int i = 0; i < sourceIndexes.size(); i++) {
+                                batchRunRowRepository.markSucceeded(runId, sourceIndexes.get(i), created.get(i).getId(), now);
+                            }
+                        }
+
+                        @Override
+                        public void onRowFailed(int sourceIndex, String message) {
+                            batchRunRowRepository.markFailed(runId, sourceIndex, message, Instant.now());
+                        }
+                    });
+        } catch (Exception e) {
+            log.error("Batch run {} failed", runId, e);
+            runError = e.getMessage() != null ? e.getMessage() : "バッチ処理中にエラーが発生しました。";
+        } finally {
+            finish(runId, runError);
+        }
+    }
+
+    private void finish(Long runId, String runError) {
+        transactionTemplate.executeWithoutResult(status -> {
+            BatchRun run = batchRunRepository.findById(runId).orElse(null);
+            if (run == null) return;
+
+            int succeeded = (int) batchRunRowRepository.countByRunIdAndStatus(runId, ROW_SUCCEEDED);
+            int failed = (int) batchRunRowRepository.countByRunIdAndStatus(runId, ROW_FAILED);
+            run.setSucceededRows(succeeded);
+            run.setFailedRows(failed);
+            run.setErrorMessage(runError);
+            if (runError != null) {
+                run.setStatus(RUN_FAILED);
+            } else if (succeeded == run.getTotalRows()) {
+                run.setStatus(RUN_COMPLETED);
+            } else {
+                run.setStatus(RUN_PARTIAL);
+            }
+            run.setUpdatedAt(Instant.now());
+        });
+    }
+
+    private SlideDataDTO toSlideData(BatchRunRow row) {
+        String name = row.getName() == null ? "" : row.getName();
+        String content = row.getContent() == null ? "" : row.getContent();
+        boolean invalid = name.isBlank() || content.isBlank();
+        return SlideDataDTO.builder()
+                .name(name)
+                .content(content)
+                .error(invalid)
+                .errorMessage(invalid ? "スライドのタイトルまたは内容を空にできません。" : null)
+                .build();
+    }
+
+    private String normalizeKey(String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            // Không có key: mỗi request là 1 run mới (vẫn resume được theo runId).
+            return UUID.randomUUID().toString();
+        }
+        String key = idempotencyKey.trim();
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key は" + MAX_KEY_LENGTH + "文字以内で指定してください。");
+        }
+        return key;
+    }
+
+    private BatchRun findOwnedRun(Long runId, Long currentUserId) {
+        BatchRun run = batchRunRepository.findById(runId)
+                .orElseThrow(() -> new ResourceNotFoundException("バッチ実行が存在しません: " + runId));
+        if (run.getOwner() == null || !run.getOwner().getId().equals(currentUserId)) {
+            throw new SecurityException("このバッチ実行にアクセスする権限がありません。");
+        }
+        return run;
+    }
+
+    private BatchRunResponse toResponse(BatchRun run, String rowStatus) {
+        List<BatchRunRowRepository.RowSummary> summaries = (rowStatus == null || rowStatus.isBlank())
+                ? batchRunRowRepository.findByRunIdOrderByRowIndexAsc(run.getId(), BatchRunRowRepository.RowSummary.class)
+                : batchRunRowRepository.findByRunIdAndStatusOrderByRowIndexAsc(
+                        run.getId(), rowStatus.trim().toUpperCase(), BatchRunRowRepository.RowSummary.class);
+
+        int succeeded = (int) batchRunRowRepository.countByRunIdAndStatus(run.getId(), ROW_SUCCEEDED);
+        int failed = (int) batchRunRowRepository.countByRunIdAndStatus(run.getId(), ROW_FAILED);
+
+        List<BatchRunResponse.RowStatus> rows = summaries.stream()
+                .map(r -> BatchRunResponse.RowStatus.builder()
+                        .rowIndex(r.getRowIndex())
+                        .name(r.getName())
+                        .status(r.getStatus())
+                        .errorMessage(r.getErrorMessage())
+                        .presentationId(r.getPresentationId())
+                        .build())
+                .toList();
+
+        return BatchRunResponse.builder()
+                .runId(run.getId())
+                .idempotencyKey(run.getIdempotencyKey())
+                .status(run.getStatus())
+                .totalRows(run.getTotalRows())
+                .succeededRows(succeeded)
+                .failedRows(failed)
+                .pendingRows(Math.max(0, run.getTotalRows() - succeeded - failed))
+                .errorMessage(run.getErrorMessage())
+                .createdAt(run.getCreatedAt())
+                .updatedAt(run.getUpdatedAt())
+                .rows(rows)
+                .build();
+    }
+}
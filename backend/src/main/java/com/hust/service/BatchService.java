@@ -1,9 +1,10 @@
 package com.hust.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.RawValue;
 import com.hust.dto.request.BatchGenerateRequest;
+import com.hust.dto.response.BatchPreviewEvent;
 import com.hust.dto.response.PresentationResponse;
 import com.hust.dto.response.SlideDataDTO;
 import com.hust.entity.*;
@@ -15,22 +16,42 @@ import com.hust.repository.TemplateSlideRepository;
 import com.hust.repository.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -56,23 +77,202 @@ public class BatchService {
         }
     }
 
+    /**
+     * Kết quả của bước validate/chuẩn bị: các dòng đã parse sẵn + layout đã resolve.
+     * Không giữ entity nào (chỉ ID + layout JSON) để có thể dùng lại ở thread khác (batch job).
+     */
+    public static class BatchPlan {
+        private final Long ownerId;
+        private final String ownerUsername;
+        private final List<LayoutRef> deckLayouts;
+        private final LayoutRef repeatedLayout;
+        private final List<PreparedRow> rows;
+        private final List<RowFailure> failures;
+        private final List<String> warnings;
+
+        private BatchPlan(Long ownerId, String ownerUsername, List<LayoutRef> deckLayouts,
+                          LayoutRef repeatedLayout, List<PreparedRow> rows, List<RowFailure> failures,
+                          List<String> warnings) {
+            this.ownerId = ownerId;
+            this.ownerUsername = ownerUsername;
+            this.deckLayouts = deckLayouts;
+            this.repeatedLayout = repeatedLayout;
+            this.rows = rows;
+            this.failures = failures;
+            this.warnings = warnings;
+        }
+
+        public Long getOwnerId() {
+            return ownerId;
+        }
+
+        public int getTotalRows() {
+            return rows.size();
+        }
+
+        public List<RowFailure> getFailures() {
+            return failures;
+        }
+
+        public List<String> getWarnings() {
+            return warnings;
+        }
+    }
+
+    /** Dòng không tạo được (index gốc của dòng + lý do). */
+    public record RowFailure(int sourceIndex, String message) {
+    }
+
+    /**
+     * Checkpoint theo dòng cho batch run.
+     * {@link #onRowsPersisted} chạy BÊN TRONG transaction của chunk, nên trạng thái dòng
+     * được commit cùng lúc với presentation (không bao giờ tạo trùng khi chạy lại).
+     */
+    public interface RowTracker {
+        void onRowsPersisted(List<Integer> sourceIndexes, List<PresentationResponse> created);
+
+        void onRowFailed(int sourceIndex, String message);
+    }
+
+    /** Nhận từng dòng preview ngay khi sẵn sàng (ghi ra response stream, gom vào list, ...). */
+    @FunctionalInterface
+    public interface RowSink {
+        void accept(SlideDataDTO row) throws IOException;
+    }
+
+    /** Callback sau mỗi chunk đã commit (created = presentation của chunk đó). */
+    @FunctionalInterface
+    public interface ChunkListener {
+        void onChunkCommitted(List<PresentationResponse> created, int rowsDone);
+    }
+
     private record TitleAndBody(String title, String body) {
     }
 
     private record LessonMeta(String subject, String lesson) {
     }
 
+    private record LayoutRef(Long id, TemplateLayoutCache.CompiledLayout layout) {
+    }
+
+    private record PreparedRow(int sourceIndex, String title, LessonMeta meta, List<TitleAndBody> slides) {
+    }
+
+    private record RowResult(PreparedRow row, String warning, String error) {
+        static RowResult failed(String error) {
+            return new RowResult(null, null, error);
+        }
+    }
+
+    // Payload đã build sẵn (content JSON hoàn chỉnh), writer chỉ việc persist.
+    private record SlidePayload(Long layoutId, String contentJson) {
+    }
+
+    private record PresentationPayload(int sourceIndex, String title, List<SlidePayload> slides) {
+    }
+
     @Autowired private UserRepository userRepository;
     @Autowired private PresentationRepository presentationRepository;
     @Autowired private SlideRepository slideRepository;
     @Autowired private TemplateRepository templateRepository;
     @Autowired private TemplateSlideRepository templateSlideRepository;
     @Autowired private ObjectMapper objectMapper;
+    @Autowired private TemplateLayoutCache templateLayoutCache;
+    @Autowired private BatchUploadSessionService batchUploadSessionService;
+    @PersistenceContext private EntityManager entityManager;
     // @Autowired private HistoryLogService historyLogService;
 
+    // Số dòng Excel (presentation) được ghi trong 1 transaction
+    @Value("${batch.chunk-size:50}")
+    private int chunkSize;
+
+    private TransactionTemplate chunkTransaction;
+
+    @Autowired
+    @Qualifier("batchTransformPool")
+    private ForkJoinPool batchTransformPool;
+
+    @Autowired
+    @Qualifier("docFetchExecutor")
+    private Executor docFetchExecutor;
+
+    // Số dòng preview tối đa đang chờ (tải Google Docs) trước khi phải đẩy dòng đầu ra
+    @Value("${batch.preview-window:16}")
+    private int previewWindow;
+
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
     // --- 1. Xử lý Upload và Preview (POST /api/batch/upload) ---
     public List<SlideDataDTO> parseFile(MultipartFile file, Long currentUserId) {
+
+        List<SlideDataDTO> dataList = new ArrayList<>();
+
+        try (Workbook workbook = openWorkbook(file)) {
+            streamRows(workbook, dataList::add);
+        } catch (IOException e) {
+            log.error("Excel ファイルの読み取りエラー: {}", e.getMessage());
+            throw new RuntimeException("Excel/CSV ファイルを処理できません。");
+        }
         
+        if (dataList.isEmpty()) {
+            throw new IllegalArgumentException("ファイルに有効なスライドデータが含まれていません。");
+        }
+        return dataList;
+    }
+
+    /**
+     * Preview dạng stream: mỗi dòng được ghi ra ngay thành 1 dòng NDJSON ({@code type=row}),
+     * cuối cùng là 1 dòng {@code type=summary}. Lỗi file được ném ra trước khi bắt đầu stream (400).
+     * {@code keepSession = true}: lưu dữ liệu thành phiên upload và trả token trong summary
+     * (khi đó các dòng được giữ lại đến cuối để ghi phiên).
+     */
+    public StreamingResponseBody streamPreview(MultipartFile file, boolean keepSession, Long currentUserId) {
+        Workbook workbook = openWorkbook(file);
+
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            List<SlideDataDTO> kept = keepSession ? new ArrayList<>() : null;
+            int[] counts = new int[2]; // [0] = số dòng, [1] = số dòng lỗi
+
+            BatchPreviewEvent.BatchPreviewEventBuilder summary = BatchPreviewEvent.builder().type("summary");
+            try (workbook) {
+                streamRows(workbook, row -> {
+                    writeNdjson(writer, BatchPreviewEvent.builder().type("row").index(counts[0]).row(row).build());
+                    counts[0]++;
+                    if (row.isError()) counts[1]++;
+                    if (kept != null) kept.add(row);
+                });
+
+                if (counts[0] == 0) {
+                    summary.errorMessage("ファイルに有効なスライドデータが含まれていません。");
+                } else if (kept != null) {
+                    summary.uploadToken(batchUploadSessionService.create(kept, currentUserId).getToken());
+                }
+            } catch (RuntimeException e) {
+                // IOException (client đã ngắt kết nối) không bắt ở đây: không thể gửi summary nữa.
+                log.error("Batch preview stream failed after {} rows", counts[0], e);
+                summary.errorMessage(e.getMessage() != null ? e.getMessage() : "Excel/CSV ファイルを処理できません。");
+            }
+
+            writeNdjson(writer, summary.totalRows(counts[0]).errorRows(counts[1]).build());
+        };
+    }
+
+    private void writeNdjson(Writer writer, BatchPreviewEvent event) throws IOException {
+        writer.write(objectMapper.writeValueAsString(event));
+        writer.write('\n');
+        writer.flush();
+    }
+
+    /**
+     * Kiểm tra file và mở workbook (đồng bộ, nên file lỗi vẫn trả về 400 trước khi stream).
+     * Caller chịu trách nhiệm đóng workbook.
+     */
+    public Workbook openWorkbook(MultipartFile file) {
         if (file.isEmpty()) {
             throw new IllegalArgumentException("アップロードされたファイルを空にできません。");
         }
@@ -82,15 +282,31 @@ public class BatchService {
         if (fileName == null || (!fileName.endsWith(".xlsx") && !fileName.endsWith(".xls"))) {
             throw new IllegalArgumentException("ファイル形式が無効です。Excel（.xlsx / .xls）のみ対応しています。");
         }
-        
-        List<SlideDataDTO> dataList = new ArrayList<>();
-        
+
         try (InputStream inputStream = file.getInputStream()) {
-            Workbook workbook = WorkbookFactory.create(inputStream);
-            DataFormatter formatter = new DataFormatter();
-            FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
-            Sheet sheet = workbook.getSheetAt(0);
-            
+            return WorkbookFactory.create(inputStream);
+        } catch (IOException e) {
+            log.error("Excel ファイルの読み取りエラー: {}", e.getMessage());
+            throw new RuntimeException("Excel/CSV ファイルを処理できません。");
+        }
+    }
+
+    /**
+     * Đọc sheet đầu tiên và đẩy từng dòng ra {@code sink} ngay khi dòng đó sẵn sàng, đúng thứ tự dòng.
+     * Link Google Docs được tải song song trên {@code docFetchExecutor}; tối đa
+     * {@code batch.preview-window} dòng đang chờ cùng lúc, nên bộ nhớ chỉ giữ các dòng đang xử lý.
+     *
+     * @return số dòng đã đẩy ra
+     */
+    public int streamRows(Workbook workbook, RowSink sink) throws IOException {
+        DataFormatter formatter = new DataFormatter();
+        FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+        Sheet sheet = workbook.getSheetAt(0);
+        int window = Math.max(1, previewWindow);
+
+        Deque<CompletableFuture<SlideDataDTO>> inFlight = new ArrayDeque<>();
+        int emitted = 0;
+        try {
             // Bỏ qua hàng tiêu đề (hàng 0)
             for (int i = 1; i <= sheet.getLastRowNum(); i++) {
                 Row row = sheet.getRow(i);
@@ -99,61 +315,90 @@ public class BatchService {
                 // Giả định: Cột 0 là Tên Slide, Cột 1 là Nội dung
                 String name = getCellValue(row.getCell(0), formatter, evaluator);
                 String contentRaw = getCellValue(row.getCell(1), formatter, evaluator);
-                String content = contentRaw;
 
-                // Nếu cột B là Google Docs link (public), tải về text để dùng làm content.
-                // Nếu không tải được (private/forbidden/invalid), đánh dấu error cho dòng này.
                 if (!contentRaw.isBlank() && looksLikeUrl(contentRaw)) {
-                    try {
-                        String resolved = tryResolveGoogleDocsToText(contentRaw);
-                        if (resolved != null) {
-                            content = resolved;
-                        }
-                    } catch (Exception e) {
-                        dataList.add(SlideDataDTO.builder()
-                                .name(name)
-                                .content(contentRaw)
-                                .error(true)
-                                .errorMessage("Google Docs のリンクから内容を読み取れません（公開設定または形式を確認してください）。")
-                                .build());
-                        continue;
-                    }
+                    inFlight.add(CompletableFuture.supplyAsync(() -> toPreviewRow(name, contentRaw), docFetchExecutor));
+                } else {
+                    inFlight.add(CompletableFuture.completedFuture(toPreviewRow(name, contentRaw)));
                 }
 
-                boolean nameBlank = name.isBlank();
-                boolean contentBlank = content.isBlank();
-
-                // Skip fully empty rows (common when sheets contain formatting down to many rows)
-                if (nameBlank && contentBlank) {
-                    continue;
+                // Đẩy ra các dòng đầu hàng đã xong; nếu cửa sổ đầy thì chờ dòng đầu.
+                while (!inFlight.isEmpty() && (inFlight.size() >= window || inFlight.peekFirst().isDone())) {
+                    emitted += emitHead(inFlight, sink);
                 }
-                
-                // Validation nghiệp vụ: (Business Rule No. 5)
-                if (nameBlank || contentBlank) {
-                    dataList.add(SlideDataDTO.builder()
-                            .name(name)
-                            .content(content)
-                            .error(true)
-                            .errorMessage("スライドのタイトルまたは内容を空にできません。")
-                            .build());
-                } else {
-                    dataList.add(SlideDataDTO.builder()
-                            .name(name)
-                            .content(content)
-                            .error(false)
-                            .build());
+            }
+            while (!inFlight.isEmpty()) {
+                emitted += emitHead(inFlight, sink);
+            }
+        } finally {
+            // Client ngắt kết nối / lỗi: bỏ các lượt tải còn lại.
+            for (CompletableFuture<SlideDataDTO> f : inFlight) {
+                f.cancel(true);
+            }
+        }
+        return emitted;
+    }
+
+    private int emitHead(Deque<CompletableFuture<SlideDataDTO>> inFlight, RowSink sink) throws IOException {
+        SlideDataDTO dto;
+        try {
+            dto = inFlight.peekFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Batch preview interrupted");
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+        inFlight.removeFirst();
+        if (dto == null) return 0;
+        sink.accept(dto);
+        return 1;
+    }
+
+    /** 1 dòng Excel => 1 dòng preview (null nếu dòng hoàn toàn trống). */
+    private SlideDataDTO toPreviewRow(String name, String contentRaw) {
+        String content = contentRaw;
+
+        // Nếu cột B là Google Docs link (public), tải về text để dùng làm content.
+        // Nếu không tải được (private/forbidden/invalid), đánh dấu error cho dòng này.
+        if (!contentRaw.isBlank() && looksLikeUrl(contentRaw)) {
+            try {
+                String resolved = tryResolveGoogleDocsToText(contentRaw);
+                if (resolved != null) {
+                    content = resolved;
                 }
+            } catch (Exception e) {
+                return SlideDataDTO.builder()
+                        .name(name)
+                        .content(contentRaw)
+                        .error(true)
+                        .errorMessage("Google Docs のリンクから内容を読み取れません（公開設定または形式を確認してください）。")
+                        .build();
             }
-            
-        } catch (IOException e) {
-            log.error("Excel ファイルの読み取りエラー: {}", e.getMessage());
-            throw new RuntimeException("Excel/CSV ファイルを処理できません。");
+        }
+
+        boolean nameBlank = name.isBlank();
+        boolean contentBlank = content.isBlank();
+
+        // Skip fully empty rows (common when sheets contain formatting down to many rows)
+        if (nameBlank && contentBlank) {
+            return null;
         }
         
-        if (dataList.isEmpty()) {
-            throw new IllegalArgumentException("ファイルに有効なスライドデータが含まれていません。");
+        // Validation nghiệp vụ: (Business Rule No. 5)
+        if (nameBlank || contentBlank) {
+            return SlideDataDTO.builder()
+                    .name(name)
+                    .content(content)
+                    .error(true)
+                    .errorMessage("スライドのタイトルまたは内容を空にできません。")
+                    .build();
         }
-        return dataList;
+        return SlideDataDTO.builder()
+                .name(name)
+                .content(content)
+                .error(false)
+                .build();
     }
 
     private static final Pattern GOOGLE_DOC_ID = Pattern.compile("https?://docs\\.google\\.com/document/(?:u/\\d+/)?d/([a-zA-Z0-9_-]+)");
@@ -211,26 +456,62 @@ public class BatchService {
     // Cột B: nội dung hoặc link Google Docs (public). Nội dung có thể chứa nhiều slide:
     // - Tách slide bằng "---"
     // - Mỗi slide block: dòng đầu là title, các dòng sau là body (structured: Ảnh -> Caption -> Text -> Date theo "\\--", slot theo "\\-")
-    @Transactional
+    //
+    // Không còn chạy trong 1 transaction lớn: dữ liệu được validate trước (prepareBatch),
+    // sau đó ghi theo từng chunk, mỗi chunk commit riêng (executeBatch).
     public BatchGenerateResult createBatchSlides(BatchGenerateRequest request, Long currentUserId) {
-        
-        // Kiểm tra quyền (Authorization)
-        User owner = userRepository.findById(currentUserId)
-            .orElseThrow(() -> new ResourceNotFoundException("ユーザーが存在しません。"));
-        
+        BatchPlan plan = prepareBatch(request, currentUserId);
+
+        List<PresentationResponse> created = new ArrayList<>();
+        List<String> warnings = new ArrayList<>(plan.getWarnings());
+        executeBatch(plan, (chunkCreated, rowsDone) -> created.addAll(chunkCreated));
+
+        return new BatchGenerateResult(created, warnings);
+    }
+
+    /**
+     * Validate toàn bộ dữ liệu và resolve layout trước khi ghi bất kỳ dòng nào vào DB.
+     * Lỗi dữ liệu (dòng lỗi, block không có title, ...) được ném ra ở đây, nên batch
+     * hoặc được chấp nhận toàn bộ, hoặc bị từ chối trước khi tạo presentation đầu tiên.
+     */
+    public BatchPlan prepareBatch(BatchGenerateRequest request, Long currentUserId) {
+
+        // Dữ liệu: từ phiên upload (token + sửa/bỏ chọn) hoặc gửi trực tiếp trong request.
+        List<SlideDataDTO> input = resolveInputRows(request, currentUserId);
+
         // Business Rule: Đảm bảo không có lỗi validation (isError = true)
-        boolean hasCriticalErrors = request.getSlides().stream()
+        boolean hasCriticalErrors = input.stream()
                 .anyMatch(SlideDataDTO::isError);
         if (hasCriticalErrors) {
             throw new IllegalArgumentException("データにエラーがあるためスライドを作成できません。ファイルを修正してください。");
         }
-        
+
+        BatchPlan plan = prepareRows(currentUserId, request.getTemplateId(), request.getTemplateSlideId(),
+                IntStream.range(0, input.size()).boxed().toList(), input);
+
+        // Lỗi được báo theo dòng đầu tiên bị lỗi như trước.
+        if (!plan.failures.isEmpty()) {
+            throw new IllegalArgumentException(plan.failures.get(0).message());
+        }
+        return plan;
+    }
+
+    /**
+     * Giống {@link #prepareBatch} nhưng không dừng ở dòng lỗi: dòng lỗi được ghi vào
+     * {@link BatchPlan#getFailures()}, các dòng còn lại vẫn được chuẩn bị để ghi.
+     * {@code sourceIndexes[i]} là index gốc của {@code input[i]} (dùng để báo lỗi / checkpoint).
+     * Lỗi không thuộc về dòng nào (user, template, quyền) vẫn được ném ra.
+     */
+    public BatchPlan prepareRows(Long currentUserId, Long templateId, Long templateSlideId,
+                                 List<Integer> sourceIndexes, List<SlideDataDTO> input) {
+
+        // Kiểm tra quyền (Authorization)
+        User owner = userRepository.findById(currentUserId)
+            .orElseThrow(() -> new ResourceNotFoundException("ユーザーが存在しません。"));
+
         // 1) Resolve layout strategy
         // - Preferred: template deck (templateId) => apply per-slide layout from template slides, cap slide count to deck size.
         // - Fallback: single template slide (templateSlideId) => repeat the same layout for all slides.
-        final Long templateId = request.getTemplateId();
-        final Long templateSlideId = request.getTemplateSlideId();
-
         TemplateSlide repeatedLayout = null;
         List<TemplateSlide> templateDeckSlides = null;
 
@@ -253,85 +534,265 @@ public class BatchService {
             repeatedLayout = templateSlideRepository.findById(templateSlideId != null ? templateSlideId : 1L)
                     .orElseThrow(() -> new ResourceNotFoundException("レイアウトテンプレートが存在しません。"));
         }
-        
-        Instant now = Instant.now();
-        List<PresentationResponse> created = new ArrayList<>();
+
+        List<LayoutRef> deckLayouts = templateDeckSlides == null ? null : templateDeckSlides.stream()
+                .map(ts -> new LayoutRef(ts.getId(), templateLayoutCache.get(ts.getId(), ts.getLayoutJson())))
+                .toList();
+        LayoutRef repeated = repeatedLayout == null ? null
+                : new LayoutRef(repeatedLayout.getId(),
+                        templateLayoutCache.get(repeatedLayout.getId(), repeatedLayout.getLayoutJson()));
+
+        // 2) Parse + validate từng dòng song song (CPU-bound, không đụng DB).
+        // Kết quả giữ đúng thứ tự dòng.
+        List<RowResult> results = runInTransformPool(() -> IntStream.range(0, input.size())
+                .parallel()
+                .mapToObj(i -> {
+                    SlideDataDTO row = input.get(i);
+                    if (row.isError()) {
+                        return RowResult.failed(row.getErrorMessage() != null
+                                ? row.getErrorMessage()
+                                : "スライドのタイトルまたは内容を空にできません。");
+                    }
+                    return prepareRow(row, sourceIndexes.get(i), deckLayouts);
+                })
+                .toList());
+
+        List<PreparedRow> rows = new ArrayList<>(results.size());
+        List<RowFailure> failures = new ArrayList<>();
         List<String> warnings = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            RowResult result = results.get(i);
+            if (result.error() != null) {
+                failures.add(new RowFailure(sourceIndexes.get(i), result.error()));
+                continue;
+            }
+            if (result.warning() != null) {
+                warnings.add(result.warning());
+            }
+            rows.add(result.row());
+        }
+
+        return new BatchPlan(owner.getId(), owner.getUsername(), deckLayouts, repeated, rows, failures, warnings);
+    }
+
+    public List<SlideDataDTO> resolveInputRows(BatchGenerateRequest request, Long currentUserId) {
+        List<SlideDataDTO> rows = (request.getUploadToken() != null && !request.getUploadToken().isBlank())
+                ? batchUploadSessionService.resolveRows(request, currentUserId)
+                : request.getSlides();
+        if (rows == null || rows.isEmpty()) {
+            throw new IllegalArgumentException("スライド一覧は必須です。");
+        }
+        return rows;
+    }
+
+    private RowResult prepareRow(SlideDataDTO row, int sourceIndex, List<LayoutRef> deckLayouts) {
+        LessonMeta meta = parseLessonMeta(row.getName());
+        String presentationTitle = (meta.lesson != null && !meta.lesson.isBlank())
+                ? meta.lesson
+                : (meta.subject != null && !meta.subject.isBlank())
+                ? meta.subject
+                : (row.getName() == null ? "バッチプレゼンテーション" : row.getName());
+
+        List<String> slideBlocks = splitSlideBlocks(row.getContent(), true);
+        if (slideBlocks.isEmpty()) {
+            return RowResult.failed("次のプレゼンテーションの内容が空、または無効です: " + presentationTitle);
+        }
+
+        String warning = null;
+        if (deckLayouts != null) {
+            int maxSlides = deckLayouts.size();
+            if (slideBlocks.size() > maxSlides) {
+                // Create only up to template slide count, but return a warning to the client.
+                warning = "送信された内容数がテンプレートのページ数を超えています: "
+                        + slideBlocks.size()
+                        + "ページ（プレゼンテーション: "
+                        + presentationTitle
+                        + "）。テンプレートは"
+                        + maxSlides
+                        + "ページです。";
+                slideBlocks = slideBlocks.subList(0, maxSlides);
+            }
+        }
 
-        for (SlideDataDTO row : request.getSlides()) {
-            LessonMeta meta = parseLessonMeta(row.getName());
-            String presentationTitle = (meta.lesson != null && !meta.lesson.isBlank())
-                    ? meta.lesson
-                    : (meta.subject != null && !meta.subject.isBlank())
-                    ? meta.subject
-                    : (row.getName() == null ? "バッチプレゼンテーション" : row.getName());
-
-            List<String> slideBlocks = splitSlideBlocks(row.getContent(), true);
-            if (slideBlocks.isEmpty()) {
-                throw new IllegalArgumentException("次のプレゼンテーションの内容が空、または無効です: " + presentationTitle);
+        List<TitleAndBody> slides = new ArrayList<>(slideBlocks.size());
+        for (String block : slideBlocks) {
+            TitleAndBody parsed = parseTitleAndBodyFromBlock(block);
+            if (parsed.title == null || parsed.title.isBlank()) {
+                return RowResult.failed("次のプレゼンテーションのスライドにタイトル（1行目）がありません: " + presentationTitle);
             }
+            slides.add(parsed);
+        }
+
+        return new RowResult(new PreparedRow(sourceIndex, presentationTitle, meta, slides), warning, null);
+    }
+
+    /**
+     * Ghi các dòng đã validate theo từng chunk ({@code batch.chunk-size} dòng / transaction).
+     * Mỗi chunk chạy trong transaction mới (REQUIRES_NEW) nên persistence context được bỏ đi
+     * sau mỗi lần commit, không phình theo số lượng Presentation/Slide.
+     *
+     * Pipeline 2 tầng: trong lúc thread hiện tại ghi chunk k, transform pool đã build sẵn
+     * content JSON của chunk k+1. Bộ nhớ chỉ giữ tối đa 2 chunk payload cùng lúc.
+     */
+    public void executeBatch(BatchPlan plan, ChunkListener listener) {
+        executeBatch(plan, listener, null);
+    }
+
+    /**
+     * Như trên, nhưng khi có {@code tracker}: chunk lỗi không làm dừng cả batch mà được
+     * ghi lại từng dòng một (mỗi dòng 1 transaction) để cô lập dòng lỗi; dòng lỗi được báo
+     * qua {@link RowTracker#onRowFailed}, các dòng còn lại vẫn được tạo.
+     */
+    public void executeBatch(BatchPlan plan, ChunkListener listener, RowTracker tracker) {
+        List<PreparedRow> rows = plan.rows;
+        int size = Math.max(1, chunkSize);
+        if (rows.isEmpty()) return;
+
+        CompletableFuture<List<PresentationPayload>> next =
+                buildChunkAsync(plan, rows.subList(0, Math.min(size, rows.size())));
+
+        for (int from = 0; from < rows.size(); from += size) {
+            List<PresentationPayload> payloads = joinBuild(next);
 
-            if (templateDeckSlides != null) {
-                int maxSlides = templateDeckSlides.size();
-                if (slideBlocks.size() > maxSlides) {
-                    // Create only up to template slide count, but return a warning to the client.
-                    warnings.add(
-                            "送信された内容数がテンプレートのページ数を超えています: "
-                                    + slideBlocks.size()
-                                    + "ページ（プレゼンテーション: "
-                                    + presentationTitle
-                                    + "）。テンプレートは"
-                                    + maxSlides
-                                    + "ページです。"
-                    );
-                    slideBlocks = slideBlocks.subList(0, maxSlides);
+            int nextFrom = from + size;
+            next = nextFrom < rows.size()
+                    ? buildChunkAsync(plan, rows.subList(nextFrom, Math.min(nextFrom + size, rows.size())))
+                    : null;
+
+            List<PresentationResponse> chunkCreated;
+            try {
+                chunkCreated = chunkTransaction.execute(status -> persistTracked(plan, payloads, tracker));
+            } catch (RuntimeException e) {
+                if (tracker == null) {
+                    if (next != null) next.cancel(true);
+                    throw e;
                 }
+                log.warn("Batch chunk failed, retrying {} rows one by one", payloads.size(), e);
+                chunkCreated = persistRowByRow(plan, payloads, tracker);
             }
+            listener.onChunkCommitted(chunkCreated, from + payloads.size());
+        }
+    }
+
+    private List<PresentationResponse> persistRowByRow(BatchPlan plan, List<PresentationPayload> payloads,
+                                                       RowTracker tracker) {
+        List<PresentationResponse> created = new ArrayList<>();
+        for (PresentationPayload payload : payloads) {
+            try {
+                created.addAll(chunkTransaction.execute(status -> persistTracked(plan, List.of(payload), tracker)));
+            } catch (RuntimeException e) {
+                log.warn("Batch row {} failed", payload.sourceIndex(), e);
+                tracker.onRowFailed(payload.sourceIndex(), "プレゼンテーションを作成できませんでした: " + payload.title());
+            }
+        }
+        return created;
+    }
+
+    private List<PresentationResponse> persistTracked(BatchPlan plan, List<PresentationPayload> payloads,
+                                                      RowTracker tracker) {
+        List<PresentationResponse> created = persistChunk(plan, payloads);
+        if (tracker != null) {
+            tracker.onRowsPersisted(payloads.stream().map(PresentationPayload::sourceIndex).toList(), created);
+        }
+        return created;
+    }
 
+    private CompletableFuture<List<PresentationPayload>> buildChunkAsync(BatchPlan plan, List<PreparedRow> chunk) {
+        return CompletableFuture.supplyAsync(
+                () -> chunk.parallelStream().map(row -> buildPayload(plan, row)).toList(),
+                batchTransformPool);
+    }
+
+    private PresentationPayload buildPayload(BatchPlan plan, PreparedRow row) {
+        List<SlidePayload> slides = new ArrayList<>(row.slides().size());
+        for (int i = 0; i < row.slides().size(); i++) {
+            TitleAndBody parsed = row.slides().get(i);
+            LayoutRef layoutForSlide = plan.deckLayouts != null
+                    ? plan.deckLayouts.get(i)
+                    : plan.repeatedLayout;
+
+            String contentJson = generateContentJsonFromTemplateAndData(
+                    layoutForSlide != null ? layoutForSlide.layout() : templateLayoutCache.empty(),
+                    parsed.title,
+                    parsed.body,
+                    row.meta().subject,
+                    row.meta().lesson
+            );
+            slides.add(new SlidePayload(layoutForSlide != null ? layoutForSlide.id() : null, contentJson));
+        }
+        return new PresentationPayload(row.sourceIndex(), row.title(), slides);
+    }
+
+    private List<PresentationResponse> persistChunk(BatchPlan plan, List<PresentationPayload> chunk) {
+        // Chỉ dùng reference (không SELECT lại) cho owner và layout trong transaction của chunk.
+        User owner = entityManager.getReference(User.class, plan.ownerId);
+        Instant now = Instant.now();
+
+        List<Presentation> presentations = new ArrayList<>(chunk.size());
+        for (PresentationPayload payload : chunk) {
             Presentation presentation = new Presentation();
             presentation.setOwner(owner);
-            presentation.setTitle(presentationTitle);
+            presentation.setTitle(payload.title());
             presentation.setCreatedAt(now);
             presentation.setEditedDate(now);
-            Presentation savedPresentation = presentationRepository.save(presentation);
-
-            AtomicInteger slideIndex = new AtomicInteger(1);
-            for (int i = 0; i < slideBlocks.size(); i++) {
-                String block = slideBlocks.get(i);
-                TitleAndBody parsed = parseTitleAndBodyFromBlock(block);
-                if (parsed.title == null || parsed.title.isBlank()) {
-                    throw new IllegalArgumentException("次のプレゼンテーションのスライドにタイトル（1行目）がありません: " + presentationTitle);
-                }
-
+            presentations.add(presentation);
+        }
+        // ID lấy từ sequence pool; INSERT thực sự được gom thành JDBC batch khi flush/commit.
+        presentationRepository.saveAll(presentations);
+
+        List<Slide> slides = new ArrayList<>();
+        for (int r = 0; r < chunk.size(); r++) {
+            Presentation savedPresentation = presentations.get(r);
+            int slideIndex = 1;
+            for (SlidePayload payload : chunk.get(r).slides()) {
                 Slide slide = new Slide();
                 slide.setPresentation(savedPresentation);
-                slide.setSlideIndex(slideIndex.getAndIncrement());
-
-                TemplateSlide layoutForSlide = templateDeckSlides != null
-                        ? templateDeckSlides.get(i)
-                        : repeatedLayout;
-                slide.setLayoutUsed(layoutForSlide);
-
-                String contentJson = generateContentJsonFromTemplateAndData(
-                        layoutForSlide != null ? layoutForSlide.getLayoutJson() : "{\"elements\": []}",
-                        parsed.title,
-                        parsed.body,
-                        meta.subject,
-                        meta.lesson
-                );
-                slide.setContentJson(contentJson);
-                slideRepository.save(slide);
+                slide.setSlideIndex(slideIndex++ * Slide.ORDER_GAP);
+                slide.setLayoutUsed(payload.layoutId() != null
+                        ? entityManager.getReference(TemplateSlide.class, payload.layoutId())
+                        : null);
+                slide.setContentJson(payload.contentJson());
+                slide.setLastModified(now);
+                slides.add(slide);
             }
+        }
+        slideRepository.saveAll(slides);
 
+        List<PresentationResponse> created = new ArrayList<>(presentations.size());
+        for (Presentation savedPresentation : presentations) {
             created.add(PresentationResponse.builder()
                     .id(savedPresentation.getId())
                     .title(savedPresentation.getTitle())
-                    .ownerUsername(owner.getUsername())
+                    .ownerUsername(plan.ownerUsername)
                     .editedDate(savedPresentation.getEditedDate())
                     .build());
         }
+        return created;
+    }
 
-        return new BatchGenerateResult(created, warnings);
+    // Chạy parallel stream trong pool riêng của batch (không chiếm common ForkJoinPool).
+    private <T> T runInTransformPool(Callable<T> task) {
+        try {
+            return batchTransformPool.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("バッチ処理が中断されました。", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private <T> T joinBuild(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof RuntimeException re) return re;
+        return new IllegalStateException(cause);
     }
 
     private LessonMeta parseLessonMeta(String raw) {
@@ -430,20 +891,12 @@ public class BatchService {
     }
     
     // --- Helper Mockup: Chèn dữ liệu vào Template Layout JSON ---
-    private String generateContentJsonFromTemplateAndData(String templateLayoutJson, String title, String content, String subject, String lesson) {
+    // Layout đã compile sẵn (TemplateLayoutCache) nên được nhúng nguyên văn, không parse lại mỗi slide.
+    private String generateContentJsonFromTemplateAndData(TemplateLayoutCache.CompiledLayout layout, String title, String content, String subject, String lesson) {
         // Build JSON safely (avoid String.format issues with '%' and escape quotes/newlines correctly)
         try {
-            JsonNode templateNode;
-            if (templateLayoutJson != null && !templateLayoutJson.isBlank()) {
-                templateNode = objectMapper.readTree(templateLayoutJson);
-            } else {
-                ObjectNode empty = objectMapper.createObjectNode();
-                empty.putArray("elements");
-                templateNode = empty;
-            }
-
             ObjectNode root = objectMapper.createObjectNode();
-            root.set("template", templateNode);
+            root.putRawValue("template", new RawValue(layout.json()));
 
             ObjectNode data = objectMapper.createObjectNode();
             data.put("subject", subject == null ? "" : subject);
@@ -455,19 +908,7 @@ public class BatchService {
 
             return objectMapper.writeValueAsString(root);
         } catch (Exception e) {
-            // Last-resort fallback: keep raw template JSON and JSON-escape title/content
-            try {
-                String safeTemplate = (templateLayoutJson != null && !templateLayoutJson.isBlank())
-                        ? templateLayoutJson
-                        : "{\"elements\": []}";
-                String safeSubject = objectMapper.writeValueAsString(subject == null ? "" : subject);
-                String safeLesson = objectMapper.writeValueAsString(lesson == null ? "" : lesson);
-                String safeTitle = objectMapper.writeValueAsString(title == null ? "" : title);
-                String safeContent = objectMapper.writeValueAsString(content == null ? "" : content);
-                return "{\"template\": " + safeTemplate + ", \"data\": {\"subject\": " + safeSubject + ", \"lesson\": " + safeLesson + ", \"title\": " + safeTitle + ", \"content\": " + safeContent + ", \"type\": \"text-slide\"}}";
-            } catch (Exception ignored) {
-                return "{\"template\": {\"elements\": []}, \"data\": {\"subject\": \"\", \"lesson\": \"\", \"title\": \"\", \"content\": \"\", \"type\": \"text-slide\"}}";
-            }
+            return "{\"template\": {\"elements\": []}, \"data\": {\"subject\": \"\", \"lesson\": \"\", \"title\": \"\", \"content\": \"\", \"type\": \"text-slide\"}}";
         }
     }
-}
\ No newline at end of file
+}
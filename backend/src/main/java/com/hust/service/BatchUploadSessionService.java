@@ -0,0 +1,210 @@
+package com.hust.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hust.dto.request.BatchGenerateRequest;
+import com.hust.dto.response.SlideDataDTO;
+import com.hust.exception.ResourceNotFoundException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Phiên upload của batch: dữ liệu đã parse từ Excel được lưu trên đĩa (1 file JSON / phiên)
+ * và client chỉ giữ token. Khi generate, client gửi token + các dòng sửa/bỏ chọn thay vì
+ * gửi lại toàn bộ nội dung (kể cả text Google Docs đã tải).
+ * Phiên hết hạn sau {@code batch.upload-ttl-minutes}, file hết hạn được dọn mỗi lần tạo phiên mới.
+ */
+@Service
+@Slf4j
+public class BatchUploadSessionService {
+
+    private static final Pattern TOKEN_PATTERN = Pattern.compile("[0-9a-f\\-]{36}");
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static class StoredSession {
+        private Long ownerId;
+        private Instant createdAt;
+        private List<SlideDataDTO> rows;
+    }
+
+    public static class UploadSession {
+        private final String token;
+        private final Instant expiresAt;
+        private final List<SlideDataDTO> rows;
+
+        private UploadSession(String token, Instant expiresAt, List<SlideDataDTO> rows) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+            this.rows = rows;
+        }
+
+        public String getToken() { return token; }
+        public Instant getExpiresAt() { return expiresAt; }
+        public List<SlideDataDTO> getRows() { return rows; }
+    }
+
+    @Autowired private ObjectMapper objectMapper;
+
+    @Value("${batch.upload-dir:${java.io.tmpdir}/quickslide-batch-uploads}")
+    private String uploadDir;
+
+    @Value("${batch.upload-ttl-minutes:120}")
+    private long ttlMinutes;
+
+    // --- 1. Lưu dữ liệu đã parse, trả về token ---
+    public UploadSession create(List<SlideDataDTO> rows, Long currentUserId) {
+        evictExpired();
+
+        String token = UUID.randomUUID().toString();
+        Instant now = Instant.now();
+        StoredSession stored = new StoredSession(currentUserId, now, rows);
+
+        try {
+            Path dir = directory();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, token, ".tmp");
+            objectMapper.writeValue(tmp.toFile(), stored);
+            try {
+                Files.move(tmp, fileOf(token), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, fileOf(token), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.error("Failed to store batch upload session", e);
+            throw new RuntimeException("アップロードデータを保存できません。");
+        }
+
+        return new UploadSession(token, now.plus(ttl()), rows);
+    }
+
+    // --- 2. Lấy lại dữ liệu theo token (chỉ owner) ---
+    public UploadSession load(String token, Long currentUserId) {
+        StoredSession stored = readSession(token);
+        if (stored == null || stored.getCreatedAt() == null
+                || stored.getCreatedAt().plus(ttl()).isBefore(Instant.now())) {
+            throw new ResourceNotFoundException("アップロードセッションが存在しないか、有効期限が切れています。");
+        }
+        if (stored.getOwnerId() == null || !stored.getOwnerId().equals(currentUserId)) {
+            throw new SecurityException("このアップロードデータにアクセスする権限がありません。");
+        }
+        List<SlideDataDTO> rows = stored.getRows() != null ? stored.getRows() : List.of();
+        return new UploadSession(token, stored.getCreatedAt().plus(ttl()), rows);
+    }
+
+    /**
+     * Dựng danh sách dòng để generate từ phiên upload:
+     * áp dụng các dòng bị bỏ chọn ({@code excludedRows}) và sửa đổi ({@code rowEdits}) theo index
+     * của dòng trong phiên. Chỉ dòng bị sửa mới được validate lại.
+     */
+    public List<SlideDataDTO> resolveRows(BatchGenerateRequest request, Long currentUserId) {
+        List<SlideDataDTO> stored = load(request.getUploadToken(), currentUserId).getRows();
+
+        Set<Integer> excluded = request.getExcludedRows() != null
+                ? new HashSet<>(request.getExcludedRows())
+                : Set.of();
+
+        List<SlideDataDTO> rows = new ArrayList<>(stored);
+        if (request.getRowEdits() != null) {
+            for (BatchGenerateRequest.RowEdit edit : request.getRowEdits()) {
+                if (edit == null || edit.getIndex() == null) continue;
+                int index = edit.getIndex();
+                if (index < 0 || index >= rows.size()) {
+                    throw new IllegalArgumentException("編集対象の行が存在しません: " + index);
+                }
+                SlideDataDTO base = rows.get(index);
+                String name = edit.getName() != null ? edit.getName() : base.getName();
+                String content = edit.getContent() != null ? edit.getContent() : base.getContent();
+                rows.set(index, validateRow(name, content));
+            }
+        }
+
+        List<SlideDataDTO> selected = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            if (!excluded.contains(i)) {
+                selected.add(rows.get(i));
+            }
+        }
+        return selected;
+    }
+
+    // Cùng rule với lúc parse file (Business Rule No. 5).
+    private SlideDataDTO validateRow(String name, String content) {
+        boolean invalid = name == null || name.isBlank() || content == null || content.isBlank();
+        return SlideDataDTO.builder()
+                .name(name == null ? "" : name)
+                .content(content == null ? "" : content)
+                .error(invalid)
+                .errorMessage(invalid ? "スライドのタイトルまたは内容を空にできません。" : null)
+                .build();
+    }
+
+    private StoredSession readSession(String token) {
+        if (token == null || !TOKEN_PATTERN.matcher(token).matches()) {
+            return null;
+        }
+        Path file = fileOf(token);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(file.toFile(), StoredSession.class);
+        } catch (IOException e) {
+            log.warn("Failed to read batch upload session {}", token, e);
+            return null;
+        }
+    }
+
+    private void evictExpired() {
+        Path dir = directory();
+        if (!Files.isDirectory(dir)) return;
+
+        Instant threshold = Instant.now().minus(ttl());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toInstant().isBefore(threshold)) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException e) {
+                    log.debug("Failed to evict batch upload file {}", file, e);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to scan batch upload directory {}", dir, e);
+        }
+    }
+
+    private Duration ttl() {
+        return Duration.ofMinutes(ttlMinutes);
+    }
+
+    private Path directory() {
+        return Paths.get(uploadDir);
+    }
+
+    private Path fileOf(String token) {
+        return directory().resolve(token + ".json");
+    }
+}
@@ -0,0 +1,223 @@
+package com.hust.service;
+
+import com.hust.dto.request.BulkExportRequest;
+import com.hust.entity.BatchRun;
+import com.hust.entity.Presentation;
+import com.hust.exception.ResourceNotFoundException;
+import com.hust.repository.BatchRunRepository;
+import com.hust.repository.BatchRunRowRepository;
+import com.hust.repository.PresentationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Export nhiều presentation vào 1 file ZIP, stream thẳng ra response.
+ * - Render song song trên {@code exportRenderExecutor} qua exporter sẵn có ({@link SlideService#renderExport}).
+ * - Chỉ giữ tối đa {@code export.bulk.max-in-flight} file đã render trong bộ nhớ; file nào xong trước
+ *   được ghi vào ZIP trước (tên entry có số thứ tự nên vẫn sắp xếp được).
+ * - ZipOutputStream tự dùng ZIP64 khi archive vượt 4GB / 65535 entry.
+ * Presentation render lỗi không làm hỏng cả archive: thay bằng entry {@code .error.txt}.
+ */
+@Service
+@Slf4j
+public class BulkExportService {
+
+    public static class BulkExport {
+        private final String fileName;
+        private final StreamingResponseBody body;
+
+        private BulkExport(String fileName, StreamingResponseBody body) {
+            this.fileName = fileName;
+            this.body = body;
+        }
+
+        public String getFileName() { return fileName; }
+        public StreamingResponseBody getBody() { return body; }
+    }
+
+    private record RenderedEntry(String name, byte[] bytes) {
+    }
+
+    @Autowired private SlideService slideService;
+    @Autowired private PresentationRepository presentationRepository;
+    @Autowired private BatchRunRepository batchRunRepository;
+    @Autowired private BatchRunRowRepository batchRunRowRepository;
+
+    @Autowired
+    @Qualifier("exportRenderExecutor")
+    private ThreadPoolTaskExecutor exportRenderExecutor;
+
+    @Value("${export.bulk.max-presentations:500}")
+    private int maxPresentations;
+
+    // 0 = 2 x số thread render
+    @Value("${export.bulk.max-in-flight:0}")
+    private int maxInFlight;
+
+    // --- Bulk export (POST /api/presentations/bulk-export) ---
+    // Kiểm tra quyền + dữ liệu đồng bộ (lỗi vẫn trả về 4xx), phần render/ghi ZIP chạy khi stream response.
+    public BulkExport prepare(BulkExportRequest request, Long currentUserId) {
+        String format = request.getFormat().trim().toUpperCase(Locale.ROOT);
+        String extension = switch (format) {
+            case "PPTX" -> "pptx";
+            case "PDF" -> "pdf";
+            case "PNG" -> "zip"; // PNG export = zip ảnh của từng slide
+            default -> throw new IllegalArgumentException("未対応のエクスポート形式です: " + request.getFormat());
+        };
+
+        String fontFamily = request.getFont() != null && !request.getFont().trim().isEmpty()
+                ? request.getFont().trim()
+                : "Noto Sans JP";
+
+        List<Presentation> presentations = resolvePresentations(request, currentUserId);
+        String fileName = sanitize(request.getFileName(), "presentations") + ".zip";
+
+        StreamingResponseBody body = out -> writeZip(presentations, format, extension, fontFamily, out);
+        return new BulkExport(fileName, body);
+    }
+
+    private List<Presentation> resolvePresentations(BulkExportRequest request, Long currentUserId) {
+        List<Long> ids;
+        if (request.getBatchRunId() != null) {
+            BatchRun run = batchRunRepository.findById(request.getBatchRunId())
+                    .orElseThrow(() -> new ResourceNotFoundException("バッチ実行が存在しません: " + request.getBatchRunId()));
+            if (run.getOwner() == null || !run.getOwner().getId().equals(currentUserId)) {
+                throw new SecurityException("このバッチ実行にアクセスする権限がありません。");
+            }
+            ids = batchRunRowRepository.findCreatedPresentationIds(run.getId());
+        } else {
+            ids = request.getPresentationIds() != null ? request.getPresentationIds() : List.of();
+        }
+
+        List<Long> uniqueIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        uniqueIds.removeIf(id -> id == null);
+        if (uniqueIds.isEmpty()) {
+            throw new IllegalArgumentException("エクスポートするプレゼンテーションがありません。");
+        }
+        if (uniqueIds.size() > maxPresentations) {
+            throw new IllegalArgumentException("一度にエクスポートできるのは" + maxPresentations + "件までです。");
+        }
+
+        Map<Long, Presentation> byId = presentationRepository.findAllById(uniqueIds).stream()
+                .collect(Collectors.toMap(Presentation::getId, Function.identity()));
+
+        List<Presentation> ordered = new ArrayList<>(uniqueIds.size());
+        for (Long id : uniqueIds) {
+            Presentation p = byId.get(id);
+            if (p == null) {
+                throw new ResourceNotFoundException("プロジェクトが存在しません: " + id);
+            }
+            if (!p.getOwner().getId().equals(currentUserId)) {
+                throw new SecurityException("このプロジェクトをエクスポートする権限がありません。");
+            }
+            ordered.add(p);
+        }
+        return ordered;
+    }
+
+    private void writeZip(List<Presentation> presentations, String format, String extension,
+                          String fontFamily, OutputStream out) throws IOException {
+        int total = presentations.size();
+        int window = maxInFlight > 0 ? maxInFlight : Math.max(2, exportRenderExecutor.getMaxPoolSize() * 2);
+        int digits = String.valueOf(total).length();
+
+        CompletionService<RenderedEntry> completion = new ExecutorCompletionService<>(exportRenderExecutor);
+        List<Future<RenderedEntry>> submitted = new ArrayList<>(total);
+
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, 64 * 1024), StandardCharsets.UTF_8)) {
+            int next = 0;
+            int written = 0;
+            while (written < total) {
+                while (next < total && next - written < window) {
+                    final int index = next++;
+                    submitted.add(completion.submit(() ->
+                            render(presentations.get(index), index, digits, format, extension, fontFamily)));
+                }
+
+                RenderedEntry entry = completion.take().get();
+                writeStoredEntry(zip, entry);
+                written++;
+            }
+            zip.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelAll(submitted);
+            throw new InterruptedIOException("Bulk export interrupted");
+        } catch (ExecutionException | IOException | RuntimeException e) {
+            // Client ngắt kết nối (IOException) hoặc lỗi khác: hủy các render còn lại.
+            cancelAll(submitted);
+            if (e instanceof IOException io) throw io;
+            throw new IOException("Bulk export failed", e);
+        }
+    }
+
+    private RenderedEntry render(Presentation presentation, int index, int digits,
+                                 String format, String extension, String fontFamily) {
+        String baseName = String.format("%0" + digits + "d_%s", index + 1, sanitize(presentation.getTitle(), "presentation"));
+        try {
+            byte[] bytes = slideService.renderExport(presentation, format, fontFamily);
+            return new RenderedEntry(baseName + "." + extension, bytes);
+        } catch (Exception e) {
+            log.warn("Bulk export: failed to render presentation {}", presentation.getId(), e);
+            String message = "エクスポートに失敗しました: " + presentation.getTitle()
+                    + (e.getMessage() != null ? "\n" + e.getMessage() : "");
+            return new RenderedEntry(baseName + ".error.txt", message.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // PDF/PPTX/ZIP đều đã nén sẵn: lưu STORED để không tốn CPU nén lại.
+    private void writeStoredEntry(ZipOutputStream zip, RenderedEntry entry) throws IOException {
+        byte[] bytes = entry.bytes();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        ZipEntry zipEntry = new ZipEntry(entry.name());
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(bytes.length);
+        zipEntry.setCompressedSize(bytes.length);
+        zipEntry.setCrc(crc.getValue());
+
+        zip.putNextEntry(zipEntry);
+        zip.write(bytes);
+        zip.closeEntry();
+        zip.flush();
+    }
+
+    private void cancelAll(List<Future<RenderedEntry>> futures) {
+        for (Future<RenderedEntry> f : futures) {
+            f.cancel(true);
+        }
+    }
+
+    private String sanitize(String raw, String fallback) {
+        if (raw == null) return fallback;
+        String cleaned = raw.replaceAll("[\\\\/:*?\"<>|\\r\\n\\t]", "_").trim();
+        if (cleaned.length() > 100) cleaned = cleaned.substring(0, 100);
+        return cleaned.isBlank() ? fallback : cleaned;
+    }
+}
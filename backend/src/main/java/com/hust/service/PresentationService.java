@@ -1,6 +1,7 @@
 package com.hust.service;
 
 import com.hust.dto.request.CreatePresentationFromTemplateRequest;
+import com.hust.dto.response.PresentationPageResponse;
 import com.hust.dto.response.PresentationResponse;
 import com.hust.entity.Presentation;
 import com.hust.entity.Slide;
@@ -14,10 +15,15 @@ import com.hust.repository.TemplateRepository;
 import com.hust.repository.TemplateSlideRepository;
 import com.hust.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -31,6 +37,9 @@ public class PresentationService {
     @Autowired private SlideRepository slideRepository;
     // @Autowired private HistoryLogService historyLogService;
     
+    private static final int RECENT_LIMIT = 10;
+    private static final int MAX_PAGE_SIZE = 100;
+
     // --- 1. Lấy danh sách Dự án gần đây (No. 3 - Khu vực ⑨) ---
     public List<PresentationResponse> getRecentPresentations(Long currentUserId) {
         
@@ -41,17 +50,79 @@ public class PresentationService {
         }
 
         // BUSINESS RULE: Danh sách Dự án gần đây phải tải theo thứ tự Ngày chỉnh sửa giảm dần.
-        List<Presentation> recentProjects = presentationRepository.findByOwnerIdOrderByEditedDateDesc(currentUserId);
-        
-        // Giới hạn số lượng trả về (ví dụ: 10 dự án gần nhất)
-        List<Presentation> limitedProjects = recentProjects.stream().limit(10).collect(Collectors.toList());
-
-        // Map Entity sang Response DTO
-        return limitedProjects.stream()
+        // Giới hạn ở DB (10 dự án gần nhất), chỉ lấy các cột cần thiết.
+        return presentationRepository.findFirstPageByOwner(currentUserId, PageRequest.of(0, RECENT_LIMIT)).stream()
                 .map(this::toPresentationResponse)
                 .collect(Collectors.toList());
     }
+
+    // --- 1b. Danh sách Dự án phân trang theo cursor (keyset trên edited_date, id) ---
+    public PresentationPageResponse listPresentations(Long currentUserId, String cursor, int limit) {
+        if (currentUserId == null) {
+            throw new com.hust.exception.UnauthorizedException("ログインしていません。");
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // Lấy dư 1 dòng để biết còn trang sau hay không (không cần COUNT).
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+
+        List<PresentationRepository.PresentationSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = presentationRepository.findFirstPageByOwner(currentUserId, pageable);
+        } else {
+            PageCursor after = decodeCursor(cursor);
+            rows = presentationRepository.findPageByOwnerAfter(currentUserId, after.editedDate(), after.id(), pageable);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<PresentationRepository.PresentationSummary> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            PresentationRepository.PresentationSummary last = page.get(page.size() - 1);
+            nextCursor = encodeCursor(last.getEditedDate(), last.getId());
+        }
+
+        return PresentationPageResponse.builder()
+                .items(page.stream().map(this::toPresentationResponse).collect(Collectors.toList()))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    private record PageCursor(Instant editedDate, Long id) {
+    }
+
+    // Cursor = base64url("<editedDate ISO-8601>|<id>"), client chỉ cần gửi lại nguyên văn.
+    private String encodeCursor(Instant editedDate, Long id) {
+        String raw = editedDate + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private PageCursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            return new PageCursor(Instant.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("カーソルが無効です。");
+        }
+    }
     
+    // --- Weak ETag cho GET /api/presentations/{id}: version + editedDate, không tải entity ---
+    @Transactional(readOnly = true)
+    public String getPresentationETag(Long projectId, Long currentUserId) {
+        PresentationRepository.PresentationStamp stamp = presentationRepository.findStampById(projectId)
+            .orElseThrow(() -> new ResourceNotFoundException("プロジェクトが存在しません: " + projectId));
+
+        if (currentUserId == null || !stamp.getOwnerId().equals(currentUserId)) {
+            throw new SecurityException("このプロジェクトにアクセスする権限がありません。");
+        }
+
+        long edited = stamp.getEditedDate() != null ? stamp.getEditedDate().toEpochMilli() : 0L;
+        return "W/\"p-" + stamp.getVersion() + "-" + edited + "\"";
+    }
+
     // --- 2. Lấy chi tiết Dự án (Cho Editor/Mở từ Dashboard) ---
     public PresentationResponse getPresentationDetails(Long projectId, Long currentUserId) {
         
@@ -109,31 +180,44 @@ public class PresentationService {
         Presentation savedPresentation = presentationRepository.save(presentation);
 
         int index = 1;
+        List<Slide> slides = new ArrayList<>(templateSlides.size());
         for (TemplateSlide ts : templateSlides) {
             Slide slide = new Slide();
             slide.setPresentation(savedPresentation);
-            slide.setSlideIndex(index++);
+            slide.setSlideIndex(index++ * Slide.ORDER_GAP);
             slide.setLayoutUsed(ts);
             slide.setContentJson(createEmptyContentJson(ts.getLayoutJson()));
             slide.setLastModified(now);
-            slideRepository.save(slide);
+            slides.add(slide);
         }
+        slideRepository.saveAll(slides);
 
         return PresentationResponse.builder()
                 .id(savedPresentation.getId())
                 .title(savedPresentation.getTitle())
                 .ownerUsername(owner.getUsername())
                 .editedDate(savedPresentation.getEditedDate())
+                .version(savedPresentation.getVersion())
                 .build();
     }
     
     // --- Helper Mapper ---
+    private PresentationResponse toPresentationResponse(PresentationRepository.PresentationSummary p) {
+        return PresentationResponse.builder()
+                .id(p.getId())
+                .title(p.getTitle())
+                .ownerUsername(p.getOwnerUsername())
+                .editedDate(p.getEditedDate())
+                .build();
+    }
+
     private PresentationResponse toPresentationResponse(Presentation p) {
         return PresentationResponse.builder()
                 .id(p.getId())
                 .title(p.getTitle())
                 .ownerUsername(p.getOwner().getUsername()) // Người tạo (④)
                 .editedDate(p.getEditedDate())             // Ngày chỉnh sửa (⑤)
+                .version(p.getVersion())
                 .build();
     }
 
@@ -0,0 +1,313 @@
+package com.hust.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.hust.exception.PreconditionFailedException;
+import com.hust.repository.PresentationRepository;
+import com.hust.repository.SlideRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bộ đệm write-behind cho autosave của editor (PUT /api/slides/{id}?autosave=true).
+ * - Nhiều lần lưu cùng 1 slide trong 1 chu kỳ flush gộp thành 1 câu UPDATE (bản cuối cùng thắng).
+ * - Payload giống hệt nội dung bộ đệm đã ghi xuống DB (và slide chưa bị ghi bởi đường khác) bị bỏ qua.
+ * - If-Match của autosave được kiểm tra ngay khi vào bộ đệm với version slide sẽ có sau các bản đang chờ;
+ *   202 trả về version đó trong ETag để lần lưu sau (autosave hoặc PUT thường) gửi lại.
+ * - Mỗi bản chờ ghi nhớ version slide mà nó dựa trên; lúc flush chỉ ghi nếu DB vẫn ở version đó
+ *   (UPDATE có điều kiện): PUT/PATCH/batch ghi trực tiếp xen giữa thì bản autosave cũ bị bỏ, không ghi đè.
+ * - Mỗi slide ghi trong transaction riêng; lỗi tạm thời được thử lại (tối đa {@code slide.autosave.max-retries} lần),
+ *   lỗi khác thì bản đó bị bỏ (ghi log) để không chặn các bản còn lại.
+ * - editedDate của presentation được cập nhật 1 lần cho mỗi presentation trong mỗi lần flush.
+ * - Flush định kỳ ({@code slide.autosave.flush-interval-ms}), trước khi đọc/ghi trực tiếp slide đó,
+ *   và khi ứng dụng tắt.
+ */
+@Component
+@Slf4j
+public class SlideAutosaveBuffer {
+
+    private static final int MAX_TRACKED_HASHES = 10000;
+
+    // contentJson != null: ghi cả document; ngược lại chỉ ghi title/content (jsonb_set).
+    // baseVersion: version slide mà bản này dựa trên => version sau khi ghi là baseVersion + 1.
+    private record PendingWrite(Long presentationId, Long baseVersion, String contentJson, String title, String content) {
+    }
+
+    // Nội dung (hash) bộ đệm ghi xuống DB gần nhất của 1 slide và version slide sau lần ghi đó.
+    private record Written(String hash, Long version) {
+    }
+
+    private final Map<Long, PendingWrite> pending = new ConcurrentHashMap<>();
+    // Bản đã lấy khỏi pending và đang được ghi: bản chờ mới của slide đó dựa trên version sau bản này.
+    private final Map<Long, PendingWrite> inFlight = new ConcurrentHashMap<>();
+    private final Map<Long, Written> written = new ConcurrentHashMap<>();
+    // Số lần ghi lỗi tạm thời liên tiếp của từng slide.
+    private final Map<Long, Integer> retries = new ConcurrentHashMap<>();
+
+    @Autowired private SlideRepository slideRepository;
+    @Autowired private PresentationRepository presentationRepository;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+
+    // Lỗi tạm thời liên tiếp quá số lần này (mỗi lần flush 1 lần) => bỏ bản chờ thay vì giữ mãi.
+    @Value("${slide.autosave.max-retries:30}")
+    private int maxRetries;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        // Luôn ghi trong transaction riêng: có thể được gọi từ bên trong 1 transaction readOnly.
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Đưa 1 lần autosave vào bộ đệm. {@code currentVersion} = version slide vừa đọc từ DB.
+     * {@code expectedVersion} (If-Match, có thể null) phải khớp version slide sẽ có sau các bản đang chờ,
+     * ngược lại => 412 kèm version đó (tab khác đã lưu).
+     * Trả về version slide sẽ có sau khi bản đang chờ được ghi (giữ nguyên nếu nội dung giống hệt bản đã ghi).
+     */
+    public Long enqueue(Long slideId, Long presentationId, Long currentVersion, Long expectedVersion,
+                        String contentJson, String title, String content) {
+        PendingWrite incoming = new PendingWrite(presentationId, null, contentJson, title, content);
+        PendingWrite queued = pending.compute(slideId, (id, previous) -> {
+            Long base = previous != null ? previous.baseVersion() : effectiveVersion(id, currentVersion);
+            Long resulting = previous != null ? base + 1 : base;
+            if (expectedVersion != null && !expectedVersion.equals(resulting)) {
+                throw new PreconditionFailedException("スライドは他の場所で更新されています。再読み込みしてください。", resulting);
+            }
+            if (previous != null) {
+                return combine(previous, incoming);
+            }
+            Written last = written.get(id);
+            if (last != null && last.version().equals(base) && last.hash().equals(hashOf(incoming))) {
+                return null; // Giống hệt nội dung đang có trong DB: không ghi.
+            }
+            return new PendingWrite(presentationId, base, contentJson, title, content);
+        });
+        return queued != null ? queued.baseVersion() + 1 : effectiveVersion(slideId, currentVersion);
+    }
+
+    // Version mà bản chờ mới dựa trên: sau bản đang ghi dở (nếu có); không nhỏ hơn version bộ đệm đã ghi
+    // (currentVersion có thể được đọc trước khi lần flush trước commit).
+    private Long effectiveVersion(Long slideId, Long currentVersion) {
+        PendingWrite flying = inFlight.get(slideId);
+        if (flying != null) {
+            return flying.baseVersion() + 1;
+        }
+        Written last = written.get(slideId);
+        return last != null && last.version() > currentVersion ? last.version() : currentVersion;
+    }
+
+    // Bản mới là cả document => thay thế. Chỉ title/content mà đang chờ cả document => áp vào document đó.
+    // Kết quả vẫn dựa trên version của bản cũ hơn (bản đó chưa được ghi).
+    private PendingWrite combine(PendingWrite previous, PendingWrite next) {
+        if (next.contentJson() != null || previous.contentJson() == null) {
+            return new PendingWrite(next.presentationId(), previous.baseVersion(), next.contentJson(), next.title(), next.content());
+        }
+        try {
+            JsonNode root = objectMapper.readTree(previous.contentJson());
+            if (root instanceof ObjectNode object) {
+                ObjectNode target = object.get("data") instanceof ObjectNode data ? data : object;
+                target.put("title", next.title());
+                target.put("content", next.content());
+                return new PendingWrite(next.presentationId(), previous.baseVersion(), object.toString(), null, null);
+            }
+        } catch (Exception e) {
+            log.debug("Autosave: could not merge title/content into pending document", e);
+        }
+        return new PendingWrite(next.presentationId(), previous.baseVersion(), null, next.title(), next.content());
+    }
+
+    /**
+     * Ghi thẳng (PUT không qua autosave, batch, xóa slide...): bỏ bản đang chờ.
+     * Bản đang ghi dở (nếu có) không cần hủy: nó chỉ ghi được nếu version chưa đổi.
+     */
+    public void discard(Long slideId) {
+        pending.remove(slideId);
+        written.remove(slideId);
+    }
+
+    /** Ghi ngay bản đang chờ của 1 slide (trước PATCH: patch phải áp lên nội dung mới nhất). */
+    public void flushSlide(Long slideId) {
+        Map<Long, PendingWrite> drained = new HashMap<>();
+        drain(slideId, drained);
+        if (!drained.isEmpty()) {
+            write(drained);
+        }
+    }
+
+    /** Ghi ngay mọi bản đang chờ của 1 presentation (trước khi load editor / export). */
+    public void flushPresentation(Long presentationId) {
+        Map<Long, PendingWrite> drained = new HashMap<>();
+        for (Map.Entry<Long, PendingWrite> e : pending.entrySet()) {
+            if (Objects.equals(e.getValue().presentationId(), presentationId)) {
+                drain(e.getKey(), drained);
+            }
+        }
+        if (!drained.isEmpty()) {
+            write(drained);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${slide.autosave.flush-interval-ms:2000}")
+    public void flushAll() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Long, PendingWrite> drained = new HashMap<>();
+        for (Long slideId : new ArrayList<>(pending.keySet())) {
+            drain(slideId, drained);
+        }
+        if (!drained.isEmpty()) {
+            write(drained);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        int count = pending.size();
+        flushAll();
+        if (count > 0) {
+            log.info("Autosave: flushed {} pending slide write(s) on shutdown", count);
+        }
+    }
+
+    // Chuyển bản chờ của slide sang inFlight (cùng lúc, dưới khóa của pending).
+    // Slide đang có bản ghi dở: để lại cho lần flush sau (2 bản không được ghi song song).
+    private void drain(Long slideId, Map<Long, PendingWrite> drained) {
+        pending.computeIfPresent(slideId, (id, w) -> {
+            if (inFlight.putIfAbsent(id, w) != null) {
+                return w;
+            }
+            drained.put(id, w);
+            return null;
+        });
+    }
+
+    // Mỗi slide ghi trong transaction riêng: 1 bản lỗi không kéo theo (và không chặn) bản của slide / user khác.
+    // editedDate của các presentation có slide được ghi cập nhật 1 lần ở cuối.
+    private void write(Map<Long, PendingWrite> writes) {
+        Instant now = Instant.now();
+        Set<Long> touchedPresentations = new LinkedHashSet<>();
+        for (Map.Entry<Long, PendingWrite> e : writes.entrySet()) {
+            Long slideId = e.getKey();
+            PendingWrite w = e.getValue();
+            List<Long> newVersion;
+            try {
+                newVersion = transactionTemplate.execute(status -> w.contentJson() != null
+                        ? slideRepository.replaceContentJson(slideId, w.contentJson(), now, w.baseVersion())
+                        : slideRepository.updateTitleAndContent(slideId, w.title(), w.content(), now, w.baseVersion()));
+            } catch (RuntimeException ex) {
+                if (isTransient(ex) && retries.merge(slideId, 1, Integer::sum) <= maxRetries) {
+                    log.warn("Autosave: failed to write slide {}, will retry", slideId, ex);
+                    requeue(slideId, w);
+                } else {
+                    log.error("Autosave: dropping buffered write for slide {} (base version {})", slideId, w.baseVersion(), ex);
+                    retries.remove(slideId);
+                    drop(slideId, w);
+                }
+                continue;
+            }
+            retries.remove(slideId);
+            if (newVersion == null || newVersion.isEmpty()) {
+                // Slide đã được ghi trực tiếp (hoặc bị xóa) sau khi bản này vào bộ đệm: bỏ bản cũ.
+                log.debug("Autosave: slide {} changed since version {}, dropping buffered write", slideId, w.baseVersion());
+                inFlight.remove(slideId, w);
+                continue;
+            }
+            if (written.size() >= MAX_TRACKED_HASHES) {
+                written.clear();
+            }
+            written.put(slideId, new Written(hashOf(w), newVersion.get(0)));
+            inFlight.remove(slideId, w);
+            touchedPresentations.add(w.presentationId());
+            eventPublisher.publishEvent(new SlideThumbnailService.SlideContentChanged(slideId));
+        }
+
+        if (!touchedPresentations.isEmpty()) {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        touchedPresentations.forEach(id -> presentationRepository.touchEditedDate(id, now)));
+            } catch (RuntimeException ex) {
+                log.warn("Autosave: failed to update editedDate of {} presentation(s)", touchedPresentations.size(), ex);
+            }
+        }
+    }
+
+    // Lỗi tạm thời (mất kết nối, timeout, deadlock...): thử lại ở lần flush sau. Lỗi khác (DB từ chối dữ liệu) không tự hết.
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof CannotCreateTransactionException
+                || e instanceof TransactionTimedOutException;
+    }
+
+    // Trả lại bộ đệm; bản mới hơn đến trong lúc ghi được gộp vào (vẫn dựa trên version cũ vì bản này chưa được ghi).
+    // Slide bị ghi trực tiếp trong lúc đó sẽ làm lần thử lại không khớp version => bị bỏ, không ghi đè.
+    private void requeue(Long slideId, PendingWrite failed) {
+        pending.compute(slideId, (id, newer) -> {
+            inFlight.remove(id, failed);
+            return newer == null ? failed : combine(failed, newer);
+        });
+    }
+
+    // Bỏ bản lỗi; bản mới hơn (nếu có) được đặt lại lên version mà bản lỗi dựa trên (version đó không đổi).
+    private void drop(Long slideId, PendingWrite failed) {
+        pending.compute(slideId, (id, newer) -> {
+            inFlight.remove(id, failed);
+            return newer == null ? null
+                    : new PendingWrite(newer.presentationId(), failed.baseVersion(), newer.contentJson(), newer.title(), newer.content());
+        });
+    }
+
+    private static String hashOf(PendingWrite w) {
+        return w.contentJson() != null
+                ? sha256("doc\u0000" + w.contentJson())
+                : sha256("text\u0000" + w.title() + "\u0000" + w.content());
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,24 +1,40 @@
 package com.hust.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.hust.dto.request.QuickCreateRequest;
+import com.hust.dto.request.SlideBatchUpdateRequest;
 import com.hust.dto.request.SlideUpdateRequest;
 import com.hust.dto.request.SaveExportRequest;
 import com.hust.dto.response.PresentationResponse;
+import com.hust.dto.response.SlideOutlineResponse;
 import com.hust.dto.response.SlideResponse;
+import com.hust.dto.response.SlideVersionResponse;
 import com.hust.entity.*;
+import com.hust.exception.PreconditionFailedException;
 import com.hust.exception.ResourceNotFoundException;
+import com.hust.exception.VersionConflictException;
 import com.hust.repository.PresentationRepository;
 import com.hust.repository.SlideRepository;
 import com.hust.repository.TemplateRepository;
 import com.hust.repository.TemplateSlideRepository;
 import com.hust.repository.UserRepository;
+import com.hust.util.JsonPatchUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
@@ -31,6 +47,8 @@ import javax.imageio.ImageIO;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Locale;
 import java.util.zip.ZipEntry;
@@ -46,9 +64,17 @@ import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 
 import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -60,12 +86,30 @@ public class SlideService {
     private static final double EDITOR_CANVAS_W = 800.0;
     private static final double EDITOR_CANVAS_H = 600.0;
 
+    // Ảnh http(s) trong slide: 1 client dùng chung, có timeout (render thumbnail chạy tự động, không để 1 host chậm chặn hàng đợi).
+    private static final Duration IMAGE_CONNECT_TIMEOUT = Duration.ofSeconds(3);
+    private static final Duration IMAGE_REQUEST_TIMEOUT = Duration.ofSeconds(5);
+    private static final HttpClient IMAGE_HTTP_CLIENT = HttpClient.newBuilder()
+            .connectTimeout(IMAGE_CONNECT_TIMEOUT)
+            .build();
+
+    // Số dòng mỗi lần lấy từ cursor khi stream danh sách slide
+    private static final int STREAM_FETCH_SIZE = 200;
+
+    // Số slide tối đa mỗi lần lấy nội dung theo cửa sổ
+    private static final int MAX_CONTENT_WINDOW = 100;
+
     @Autowired private UserRepository userRepository;
     @Autowired private PresentationRepository presentationRepository;
     @Autowired private SlideRepository slideRepository;
     @Autowired private TemplateSlideRepository templateSlideRepository;
     @Autowired private TemplateRepository templateRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private NamedParameterJdbcTemplate jdbcTemplate;
+    @Autowired private SlideAutosaveBuffer autosaveBuffer;
     @Autowired private ObjectMapper objectMapper; 
+    @Autowired private TemplateLayoutCache templateLayoutCache;
+    @Autowired private ApplicationEventPublisher eventPublisher;
     // @Autowired private HistoryLogService historyLogService;
 
     // --- 1. Tạo Slide Nhanh (Quick Creation) ---
@@ -120,6 +164,7 @@ public class SlideService {
             Presentation savedPresentation = presentationRepository.save(presentation);
 
             int slideIndex = 1;
+            List<Slide> slides = new ArrayList<>(templateSlides.size());
             for (int i = 0; i < templateSlides.size(); i++) {
                 TemplateSlide ts = templateSlides.get(i);
 
@@ -145,23 +190,8 @@ public class SlideService {
 
                     slideContent = request.getContent();
                     if (!legacyStructuredMode) {
-                        List<Map<String, Object>> els = extractElementsFromLayoutJson(ts.getLayoutJson());
-                        List<Map<String, Object>> textBoxes = els.stream()
-                                .filter(e -> {
-                                    String type = String.valueOf(e.getOrDefault("type", ""));
-                                    return "text".equalsIgnoreCase(type) || "caption".equalsIgnoreCase(type);
-                                })
-                                .sorted((a, b) -> {
-                                    double ay = toDouble(a.get("y"), 0);
-                                    double by = toDouble(b.get("y"), 0);
-                                    if (ay != by) return Double.compare(ay, by);
-                                    double ax = toDouble(a.get("x"), 0);
-                                    double bx = toDouble(b.get("x"), 0);
-                                    return Double.compare(ax, bx);
-                                })
-                                .toList();
-
-                        int needed = textBoxes.size();
+                        // Số ô text/caption lấy từ layout đã compile (cache), không parse lại layout JSON.
+                        int needed = templateLayoutCache.get(ts.getId(), ts.getLayoutJson()).textBoxCount();
                         if (needed <= 0) {
                             slideContent = "";
                         } else {
@@ -180,12 +210,14 @@ public class SlideService {
 
                 Slide slide = new Slide();
                 slide.setPresentation(savedPresentation);
-                slide.setSlideIndex(slideIndex++);
+                slide.setSlideIndex(slideIndex++ * Slide.ORDER_GAP);
                 slide.setLayoutUsed(ts);
                 slide.setContentJson(generateContentJsonWithLayout(ts.getLayoutJson(), perSlideReq));
                 slide.setLastModified(now);
-                slideRepository.save(slide);
+                slides.add(slide);
             }
+            // Ghi 1 lần: INSERT được gom thành JDBC batch thay vì 1 round trip / slide.
+            slideRepository.saveAll(slides);
 
             return PresentationResponse.builder()
                     .id(savedPresentation.getId())
@@ -207,6 +239,11 @@ public class SlideService {
                 .filter(s -> s != null && !s.trim().isEmpty())
                 .toList();
         }
+        // Layout do client gửi được parse 1 lần ở đây: JSON lỗi => 400, không phải lỗi SQL (jsonb) lúc flush.
+        JsonNode requestLayout = hasRequestLayout ? parseLayoutJson(requestLayoutJson) : null;
+        List<JsonNode> requestLayouts = hasRequestLayoutJsons
+            ? requestLayoutJsons.stream().map(this::parseLayoutJson).toList()
+            : List.of();
 
         TemplateSlide defaultLayout = null;
         if (!hasRequestLayout) {
@@ -244,6 +281,7 @@ public class SlideService {
         Presentation savedPresentation = presentationRepository.save(presentation);
 
         // 3. TẠO SLIDE (1 hoặc nhiều)
+        List<Slide> slides = new ArrayList<>(slideCount);
         for (int i = 0; i < slideCount; i++) {
             String perSlideTitle = request.getTitle();
             String perSlideContent = request.getContent();
@@ -260,16 +298,20 @@ public class SlideService {
             }
 
             String layoutJsonForSlide = requestLayoutJson;
+            JsonNode layoutForSlide = requestLayout;
             if (hasRequestLayoutJsons) {
                 int idx = Math.min(i, requestLayoutJsons.size() - 1);
                 layoutJsonForSlide = requestLayoutJsons.get(idx);
+                layoutForSlide = requestLayouts.get(idx);
             }
 
             if (!hasPerSlideContents && slideCount > 1 && !legacyStructuredMode) {
                 // Khi user không tách content theo slide, chia đoạn theo số ô text/caption của từng slide layout.
-                String lj = (hasRequestLayoutJsons || hasRequestLayout) ? layoutJsonForSlide
+                boolean usesRequestLayout = hasRequestLayoutJsons || hasRequestLayout;
+                String lj = usesRequestLayout ? layoutJsonForSlide
                         : (defaultLayout != null ? defaultLayout.getLayoutJson() : null);
-                int needed = countTextBoxesInLayoutJson(lj);
+                Long layoutId = (!usesRequestLayout && defaultLayout != null) ? defaultLayout.getId() : null;
+                int needed = templateLayoutCache.get(layoutId, lj).textBoxCount();
                 if (needed <= 0) {
                     perSlideContent = "";
                 } else {
@@ -287,19 +329,21 @@ public class SlideService {
 
             Slide slide = new Slide();
             slide.setPresentation(savedPresentation);
-            slide.setSlideIndex(i + 1);
+            slide.setSlideIndex((i + 1) * Slide.ORDER_GAP);
 
-            if ((hasRequestLayoutJsons || hasRequestLayout) && layoutJsonForSlide != null && !layoutJsonForSlide.trim().isEmpty()) {
+            if (layoutForSlide != null) {
                 slide.setLayoutUsed(null);
-                slide.setContentJson(generateContentJsonWithLayout(layoutJsonForSlide, perSlideReq));
+                slide.setContentJson(generateContentJsonWithLayout(layoutForSlide, perSlideReq));
             } else {
                 slide.setLayoutUsed(defaultLayout);
                 String contentJson = generateContentJsonWithLayout(defaultLayout.getLayoutJson(), perSlideReq);
                 slide.setContentJson(contentJson);
             }
+            slide.setLastModified(now);
 
-            slideRepository.save(slide);
+            slides.add(slide);
         }
+        slideRepository.saveAll(slides);
 
         // historyLogService.logAction("QUICK_CREATE", "PRESENTATION", savedPresentation.getId(), currentUserId);
         
@@ -311,18 +355,6 @@ public class SlideService {
                 .build();
     }
 
-    private int countTextBoxesInLayoutJson(String layoutJson) {
-        if (layoutJson == null || layoutJson.isBlank()) return 0;
-        List<Map<String, Object>> els = extractElementsFromLayoutJson(layoutJson);
-        if (els == null || els.isEmpty()) return 0;
-        int count = 0;
-        for (Map<String, Object> e : els) {
-            String type = String.valueOf(e.getOrDefault("type", ""));
-            if ("text".equalsIgnoreCase(type) || "caption".equalsIgnoreCase(type)) count++;
-        }
-        return count;
-    }
-
     /**
      * Parse 1 block slide dạng:
      * - Dòng đầu tiên (non-empty) là title.
@@ -359,28 +391,12 @@ public class SlideService {
         return out;
     }
 
-    private List<Map<String, Object>> extractElementsFromLayoutJson(String layoutJson) {
-        if (layoutJson == null || layoutJson.trim().isEmpty()) return List.of();
-        try {
-            Map<String, Object> root = objectMapper.readValue(layoutJson, Map.class);
-            Object elementsObj = root.get("elements");
-            if (elementsObj instanceof List<?> list) {
-                return list.stream()
-                        .filter(it -> it instanceof Map)
-                        .map(it -> (Map<String, Object>) it)
-                        .toList();
-            }
-            return List.of();
-        } catch (Exception e) {
-            return List.of();
-        }
-    }
-    
     // --- 2. Thêm Slide Mới (No. 7 - Nút +) ---
+    // position (1-based, tùy chọn): chèn vào vị trí đó; không truyền => thêm vào cuối.
     @Transactional
-    public Slide addNewSlideToPresentation(Long projectId, Long currentUserId) {
+    public SlideResponse addNewSlideToPresentation(Long projectId, Integer position, Long currentUserId) {
         
-        Presentation presentation = presentationRepository.findById(projectId)
+        Presentation presentation = presentationRepository.findByIdForUpdate(projectId)
             .orElseThrow(() -> new ResourceNotFoundException("プロジェクトが存在しません: " + projectId));
 
         // Kiểm tra quyền: Chỉ Owner mới được thêm Slide
@@ -388,9 +404,8 @@ public class SlideService {
             throw new SecurityException("このプロジェクトにスライドを追加する権限がありません。");
         }
         
-        // Xác định Slide Index mới (INDEX = SLIDE_COUNT + 1)
-        long currentSlideCount = slideRepository.countByPresentationIdOrderBySlideIndexAsc(projectId);
-        int newIndex = (int) currentSlideCount + 1;
+        // Khóa thứ tự mới (presentation đang bị khóa nên không bị trùng khi thêm đồng thời)
+        int newIndex = orderKeyForPosition(projectId, null, position);
         
         // Lấy Layout Template Mặc định
         TemplateSlide defaultLayout = templateSlideRepository.findById(1L)
@@ -410,12 +425,16 @@ public class SlideService {
         
         Slide savedSlide = slideRepository.save(newSlide);
         
-        // Cập nhật ngày chỉnh sửa của Presentation cha
-        presentation.setEditedDate(Instant.now());
-        presentationRepository.save(presentation);
+        // Cập nhật ngày chỉnh sửa của Presentation cha (1 câu UPDATE, không tăng version của presentation)
+        presentationRepository.touchEditedDate(projectId, Instant.now());
         
         // historyLogService.logAction("ADD_SLIDE", "SLIDE", savedSlide.getId(), currentUserId);
-        return savedSlide;
+        return SlideResponse.builder()
+                .id(savedSlide.getId())
+                .slideIndex(ordinalOf(projectId, newIndex))
+                .contentJson(savedSlide.getContentJson())
+                .version(savedSlide.getVersion())
+                .build();
     }
 
         // --- 2b. Load slides for a presentation (Editor) ---
@@ -428,47 +447,387 @@ public class SlideService {
             throw new SecurityException("このプロジェクトのスライドを閲覧する権限がありません。");
         }
 
-        return slideRepository.findByPresentationIdOrderBySlideIndexAsc(projectId)
-            .stream()
-            .map(s -> SlideResponse.builder()
+        // Autosave còn trong bộ đệm phải được ghi trước khi editor load lại.
+        autosaveBuffer.flushPresentation(projectId);
+
+        // slideIndex trả về là số thứ tự hiển thị (1, 2, 3...), không phải khóa thứ tự thưa trong DB.
+        List<Slide> slides = slideRepository.findByPresentationIdOrderBySlideIndexAsc(projectId);
+        List<SlideResponse> out = new ArrayList<>(slides.size());
+        for (int i = 0; i < slides.size(); i++) {
+            Slide s = slides.get(i);
+            out.add(SlideResponse.builder()
                 .id(s.getId())
-                .slideIndex(s.getSlideIndex())
+                .slideIndex(i + 1)
                 .contentJson(s.getContentJson())
+                .version(s.getVersion())
+                .build());
+        }
+        return out;
+        }
+
+    // --- 2b'. Weak ETag của danh sách slide (GET /api/slides/project/{id}) ---
+    // Chỉ đọc id/version/slide_index nên khi trả 304 không cần tải hay serialize content_json.
+    @Transactional(readOnly = true)
+    public String getSlidesETag(Long projectId, Long currentUserId) {
+        requireSlideReadAccess(projectId, currentUserId);
+
+        autosaveBuffer.flushPresentation(projectId);
+        return "W/\"s-" + slideRepository.findListingFingerprint(projectId) + "\"";
+    }
+
+    // --- 2b''. Danh sách slide dạng stream (deck rất lớn): GET /api/slides/project/{id}/stream ---
+    // Đọc bằng JDBC cursor (forward-only, fetchSize) và ghi thẳng ra response; content_json (jsonb) được
+    // nhúng nguyên văn thành object "content" thay vì chuỗi JSON escape => không giữ cả deck trong bộ nhớ.
+    public StreamingResponseBody streamSlidesByPresentation(Long projectId, Long currentUserId) {
+        requireSlideReadAccess(projectId, currentUserId);
+
+        autosaveBuffer.flushPresentation(projectId);
+        return out -> writeSlidesJson(projectId, out);
+    }
+
+    private void writeSlidesJson(Long projectId, OutputStream out) throws IOException {
+        JsonGenerator gen = objectMapper.getFactory().createGenerator(out);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        gen.writeStartArray();
+
+        // PostgreSQL chỉ dùng cursor (fetchSize) khi autocommit tắt => cần 1 transaction readOnly.
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        int[] ordinal = {0};
+        try {
+            tx.executeWithoutResult(status -> jdbcTemplate.getJdbcTemplate().query(con -> {
+                PreparedStatement ps = con.prepareStatement(
+                    "SELECT id, version, content_json FROM slides WHERE presentation_id = ? ORDER BY slide_index, id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(STREAM_FETCH_SIZE);
+                ps.setLong(1, projectId);
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    gen.writeStartObject();
+                    gen.writeNumberField("id", rs.getLong("id"));
+                    gen.writeNumberField("slideIndex", ++ordinal[0]);
+                    gen.writeNumberField("version", rs.getLong("version"));
+                    String content = rs.getString("content_json");
+                    gen.writeFieldName("content");
+                    if (content != null) {
+                        gen.writeRawValue(content);
+                    } else {
+                        gen.writeNull();
+                    }
+                    gen.writeEndObject();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause(); // Client ngắt kết nối
+        }
+
+        gen.writeEndArray();
+        gen.flush();
+    }
+
+    // --- 2c. Outline / filmstrip: id, số thứ tự, title (cột sinh), version; không đọc content_json ---
+    @Transactional(readOnly = true)
+    public List<SlideOutlineResponse> getSlideOutline(Long projectId, Long currentUserId) {
+        requireSlideReadAccess(projectId, currentUserId);
+
+        autosaveBuffer.flushPresentation(projectId);
+        List<SlideRepository.SlideOutline> rows = slideRepository.findOutlineByPresentationId(projectId);
+        List<SlideOutlineResponse> out = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            SlideRepository.SlideOutline row = rows.get(i);
+            out.add(SlideOutlineResponse.builder()
+                .id(row.getId())
+                .slideIndex(i + 1)
+                .title(row.getTitle())
+                .version(row.getVersion())
+                .thumbnailKey(row.getThumbnailKey())
+                .build());
+        }
+        return out;
+    }
+
+    // --- 2d. Nội dung đầy đủ của 1 cửa sổ slide (filmstrip tải dần theo vùng đang hiển thị) ---
+    @Transactional(readOnly = true)
+    public List<SlideResponse> getSlideContentWindow(Long projectId, List<Long> slideIds, Long currentUserId) {
+        Set<Long> ids = new LinkedHashSet<>(slideIds);
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        if (ids.size() > MAX_CONTENT_WINDOW) {
+            throw new IllegalArgumentException("一度に取得できるスライドは" + MAX_CONTENT_WINDOW + "件までです。");
+        }
+        requireSlideReadAccess(projectId, currentUserId);
+
+        autosaveBuffer.flushPresentation(projectId);
+        return slideRepository.findContentWindow(projectId, ids).stream()
+            .map(row -> SlideResponse.builder()
+                .id(row.getId())
+                .slideIndex(row.getSlideIndex())
+                .contentJson(row.getContentJson())
+                .version(row.getVersion())
                 .build())
-            .toList();
+            .collect(Collectors.toList());
+    }
+
+    private void requireSlideReadAccess(Long projectId, Long currentUserId) {
+        PresentationRepository.PresentationStamp stamp = presentationRepository.findStampById(projectId)
+            .orElseThrow(() -> new ResourceNotFoundException("プロジェクトが存在しません: " + projectId));
+
+        if (!stamp.getOwnerId().equals(currentUserId)) {
+            throw new SecurityException("このプロジェクトのスライドを閲覧する権限がありません。");
         }
+    }
 
     // --- 3. Cập nhật nội dung Slide (No. 7 - Nút Lưu ⑦) ---
+    // Kiểm tra quyền bằng 1 query nhỏ rồi ghi bằng 1 câu UPDATE có điều kiện version (không tải document).
+    // expectedVersion (If-Match) khác version hiện tại => 412. Trả về version mới (ETag).
     @Transactional
-    public Slide updateSlideContent(Long slideId, SlideUpdateRequest request, Long currentUserId) {
-        Slide slide = slideRepository.findById(slideId)
+    public Long updateSlideContent(Long slideId, SlideUpdateRequest request, Long expectedVersion, Long currentUserId) {
+        SlideRepository.SlideOwnership ownership = slideRepository.findOwnershipById(slideId)
             .orElseThrow(() -> new ResourceNotFoundException("スライドが存在しません: " + slideId));
 
-        Presentation presentation = slide.getPresentation();
-        
-        // Kiểm tra quyền
-        if (!presentation.getOwner().getId().equals(currentUserId)) {
+        if (!ownership.getOwnerId().equals(currentUserId)) {
             throw new SecurityException("このスライドを編集する権限がありません。");
         }
-        
+
+        // Ghi bản autosave đang chờ trước: ETag client nhận từ autosave (202) là version sau bản đó.
+        autosaveBuffer.flushSlide(slideId);
+        autosaveBuffer.discard(slideId);
+        Instant now = Instant.now();
+        List<Long> newVersion;
         // Nếu frontend gửi contentJson đầy đủ (ví dụ đã chỉnh layout), ưu tiên dùng trực tiếp.
         if (request.getUpdatedContentJson() != null && !request.getUpdatedContentJson().trim().isEmpty()) {
-            slide.setContentJson(request.getUpdatedContentJson());
+            requireJson(request.getUpdatedContentJson());
+            newVersion = slideRepository.replaceContentJson(slideId, request.getUpdatedContentJson(), now, expectedVersion);
         } else {
-            // Ngược lại chỉ cập nhật title/content vào JSON hiện có (hỗ trợ cả legacy và dạng {layout/template,data}).
-            String newContentJson = updateJsonWithTitleAndContent(slide.getContentJson(), request.getTitle(), request.getContent());
-            slide.setContentJson(newContentJson);
+            // Chỉ sửa title/content: jsonb_set ngay trong DB.
+            requireStorableText(request.getTitle(), request.getContent());
+            newVersion = slideRepository.updateTitleAndContent(slideId, request.getTitle(), request.getContent(), now, expectedVersion);
         }
-        slide.setLastModified(Instant.now());
-        
-        presentation.setEditedDate(Instant.now());
-        presentationRepository.save(presentation);
-        
+        if (newVersion.isEmpty()) {
+            Long current = slideRepository.findVersionById(slideId)
+                .orElseThrow(() -> new ResourceNotFoundException("スライドが存在しません: " + slideId));
+            throw new PreconditionFailedException("スライドは他の場所で更新されています。再読み込みしてください。", current);
+        }
+        presentationRepository.touchEditedDate(ownership.getPresentationId(), now);
+        eventPublisher.publishEvent(new SlideThumbnailService.SlideContentChanged(slideId));
+
         // historyLogService.logAction("UPDATE_SLIDE", "SLIDE", slideId, currentUserId);
-        return slideRepository.save(slide);
+        return newVersion.get(0);
+    }
+
+    // --- 3a. Autosave: không ghi ngay, đưa vào SlideAutosaveBuffer (gộp + bỏ qua lần lưu trùng) ---
+    // expectedVersion (If-Match) được kiểm tra ngay (412 nếu tab khác đã lưu). Trả về version sau khi bản chờ được ghi (ETag).
+    public Long autosaveSlideContent(Long slideId, SlideUpdateRequest request, Long expectedVersion, Long currentUserId) {
+        SlideRepository.SlideOwnership ownership = slideRepository.findOwnershipById(slideId)
+            .orElseThrow(() -> new ResourceNotFoundException("スライドが存在しません: " + slideId));
+
+        if (!ownership.getOwnerId().equals(currentUserId)) {
+            throw new SecurityException("このスライドを編集する権限がありません。");
+        }
+
+        String contentJson = request.getUpdatedContentJson();
+        if (contentJson != null && !contentJson.trim().isEmpty()) {
+            requireJson(contentJson);
+            return autosaveBuffer.enqueue(slideId, ownership.getPresentationId(), ownership.getVersion(), expectedVersion,
+                contentJson, null, null);
+        }
+        requireStorableText(request.getTitle(), request.getContent());
+        return autosaveBuffer.enqueue(slideId, ownership.getPresentationId(), ownership.getVersion(), expectedVersion,
+            null, request.getTitle(), request.getContent());
+    }
+
+    // Cột jsonb từ chối JSON lỗi => báo 400 thay vì lỗi SQL lúc flush.
+    private void requireJson(String contentJson) {
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(contentJson);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("スライドの内容が正しいJSON形式ではありません。");
+        }
+        if (containsNul(root)) {
+            throw new IllegalArgumentException(NUL_CHARACTER_MESSAGE);
+        }
+    }
+
+    // PostgreSQL (text / jsonb) không lưu được U+0000: từ chối ngay (autosave lỗi lúc flush thì client không biết).
+    private static final String NUL_CHARACTER_MESSAGE = "スライドの内容に使用できない文字 (U+0000) が含まれています。";
+
+    private static void requireStorableText(String title, String content) {
+        if ((title != null && title.indexOf('\0') >= 0) || (content != null && content.indexOf('\0') >= 0)) {
+            throw new IllegalArgumentException(NUL_CHARACTER_MESSAGE);
+        }
+    }
+
+    private static boolean containsNul(JsonNode node) {
+        if (node == null) {
+            return false;
+        }
+        if (node.isTextual()) {
+            return node.textValue().indexOf('\0') >= 0;
+        }
+        if (node.isObject()) {
+            var fields = node.fields();
+            while (fields.hasNext()) {
+                var field = fields.next();
+                if (field.getKey().indexOf('\0') >= 0 || containsNul(field.getValue())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (JsonNode child : node) {
+            if (containsNul(child)) {
+                return true;
+            }
+        }
+        return false;
     }
     
+    // --- 3c. Lưu nhiều slide của 1 presentation (PUT /api/presentations/{id}/slides:batch) ---
+    // 1 lần kiểm tra quyền, 1 JDBC batch các câu UPDATE có điều kiện, 1 lần cập nhật editedDate.
+    // Slide nào không cập nhật được (version đã đổi / không thuộc presentation) => rollback cả batch.
+    @Transactional
+    public List<SlideVersionResponse> saveSlidesBatch(Long projectId, SlideBatchUpdateRequest request, Long currentUserId) {
+        Presentation presentation = presentationRepository.findById(projectId)
+            .orElseThrow(() -> new ResourceNotFoundException("プロジェクトが存在しません: " + projectId));
+
+        if (!presentation.getOwner().getId().equals(currentUserId)) {
+            throw new SecurityException("このプロジェクトのスライドを編集する権限がありません。");
+        }
+
+        // Như PUT: version client gửi có thể là version sau các bản autosave đang chờ.
+        autosaveBuffer.flushPresentation(projectId);
+        List<SlideBatchUpdateRequest.SlideItem> items = request.getSlides();
+        Timestamp now = Timestamp.from(Instant.now());
+        Set<Long> slideIds = new LinkedHashSet<>();
+        MapSqlParameterSource[] params = new MapSqlParameterSource[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            SlideBatchUpdateRequest.SlideItem item = items.get(i);
+            if (!slideIds.add(item.getId())) {
+                throw new IllegalArgumentException("スライドIDが重複しています: " + item.getId());
+            }
+            String contentJson = item.getUpdatedContentJson();
+            if (contentJson != null && !contentJson.trim().isEmpty()) {
+                requireJson(contentJson);
+            } else {
+                requireStorableText(item.getTitle(), item.getContent());
+                contentJson = null;
+            }
+            params[i] = new MapSqlParameterSource()
+                .addValue("slideId", item.getId())
+                .addValue("presentationId", projectId)
+                .addValue("contentJson", contentJson, Types.VARCHAR)
+                .addValue("title", item.getTitle(), Types.VARCHAR)
+                .addValue("content", item.getContent(), Types.VARCHAR)
+                .addValue("modifiedAt", now)
+                .addValue("expectedVersion", item.getVersion(), Types.BIGINT);
+        }
+
+        int[] counts = jdbcTemplate.batchUpdate(BATCH_UPDATE_SQL, params);
+        List<Long> rejected = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                rejected.add(items.get(i).getId());
+            }
+        }
+        if (!rejected.isEmpty()) {
+            Map<Long, Long> current = slideRepository.findVersions(projectId, rejected).stream()
+                .collect(Collectors.toMap(SlideRepository.SlideVersion::getId, SlideRepository.SlideVersion::getVersion));
+            List<SlideVersionResponse> conflicts = new ArrayList<>(rejected.size());
+            for (Long id : rejected) {
+                Long version = current.get(id);
+                if (version == null) {
+                    throw new ResourceNotFoundException("スライドが存在しません: " + id);
+                }
+                conflicts.add(SlideVersionResponse.builder().id(id).version(version).build());
+            }
+            // Chỉ 1 slide bị từ chối: phiên bản của nó cũng nằm trong ETag như PUT/PATCH.
+            Long single = conflicts.size() == 1 ? conflicts.get(0).getVersion() : null;
+            throw new PreconditionFailedException("他の場所で更新されたスライドがあります。再読み込みしてください。", single, conflicts);
+        }
+
+        slideIds.forEach(autosaveBuffer::discard);
+        presentationRepository.touchEditedDate(projectId, now.toInstant());
+        slideIds.forEach(id -> eventPublisher.publishEvent(new SlideThumbnailService.SlideContentChanged(id)));
+
+        Map<Long, Long> versions = slideRepository.findVersions(projectId, slideIds).stream()
+            .collect(Collectors.toMap(SlideRepository.SlideVersion::getId, SlideRepository.SlideVersion::getVersion));
+        List<SlideVersionResponse> out = new ArrayList<>(slideIds.size());
+        for (Long id : slideIds) {
+            out.add(SlideVersionResponse.builder().id(id).version(versions.get(id)).build());
+        }
+        return out;
+    }
+
+    // updatedContentJson != null => ghi đè cả document; ngược lại jsonb_set title/content (cùng biểu thức với SlideRepository.updateTitleAndContent).
+    private static final String BATCH_UPDATE_SQL = "UPDATE slides SET content_json = CASE "
+        + "WHEN CAST(:contentJson AS jsonb) IS NOT NULL THEN CAST(:contentJson AS jsonb) "
+        + "ELSE " + SlideRepository.TITLE_AND_CONTENT_JSON_SQL + " "
+        + "END, last_modified = :modifiedAt, version = version + 1 "
+        + "WHERE id = :slideId AND presentation_id = :presentationId "
+        + "AND (CAST(:expectedVersion AS bigint) IS NULL OR version = CAST(:expectedVersion AS bigint))";
+
+    // --- 3b. PATCH nội dung Slide: JSON Patch (RFC 6902) hoặc merge patch (RFC 7386) ---
+    // Client chỉ gửi phần thay đổi; expectedVersion (If-Match) khác phiên bản hiện tại => 412.
+    // Ghi bằng UPDATE có điều kiện theo version vừa đọc: slide bị sửa xen giữa => 409. Trả về version mới.
+    @Transactional
+    public Long patchSlideContent(Long slideId, String patchBody, boolean mergePatch,
+                                   Long expectedVersion, Long currentUserId) {
+        // Như PUT: kiểm tra quyền bằng projection trước, rồi mới ghi bản autosave đang chờ và đọc content_json + version.
+        SlideRepository.SlideOwnership ownership = slideRepository.findOwnershipById(slideId)
+            .orElseThrow(() -> new ResourceNotFoundException("スライドが存在しません: " + slideId));
+
+        if (!ownership.getOwnerId().equals(currentUserId)) {
+            throw new SecurityException("このスライドを編集する権限がありません。");
+        }
+
+        autosaveBuffer.flushSlide(slideId);
+        SlideRepository.SlideContentVersion slide = slideRepository.findContentVersionById(slideId)
+            .orElseThrow(() -> new ResourceNotFoundException("スライドが存在しません: " + slideId));
+        if (expectedVersion != null && !expectedVersion.equals(slide.getVersion())) {
+            throw new PreconditionFailedException("スライドは他の場所で更新されています。再読み込みしてください。", slide.getVersion());
+        }
+
+        JsonNode patch;
+        JsonNode current;
+        try {
+            patch = objectMapper.readTree(patchBody);
+            current = slide.getContentJson() != null ? objectMapper.readTree(slide.getContentJson()) : null;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("パッチが正しいJSON形式ではありません。");
+        }
+
+        JsonNode patched = mergePatch
+                ? JsonPatchUtil.applyMergePatch(current, patch)
+                : JsonPatchUtil.applyJsonPatch(current, patch);
+        if (patched == null || !patched.isObject()) {
+            throw new IllegalArgumentException("スライドの内容はJSONオブジェクトである必要があります。");
+        }
+        if (containsNul(patched)) {
+            throw new IllegalArgumentException(NUL_CHARACTER_MESSAGE);
+        }
+        if (patched.equals(current)) {
+            return slide.getVersion(); // Không đổi gì: không ghi, giữ nguyên phiên bản.
+        }
+
+        Instant now = Instant.now();
+        List<Long> newVersion = slideRepository.replaceContentJson(slideId, patched.toString(), now, slide.getVersion());
+        if (newVersion.isEmpty()) {
+            Long latest = slideRepository.findVersionById(slideId).orElse(null);
+            throw new VersionConflictException("スライドは他の場所で更新されています。再読み込みしてください。", latest);
+        }
+        presentationRepository.touchEditedDate(ownership.getPresentationId(), now);
+        eventPublisher.publishEvent(new SlideThumbnailService.SlideContentChanged(slideId));
+        return newVersion.get(0);
+    }
+
     // --- 4. Xóa Slide (No. 7 - Điều khiển Slide ⑤) ---
+    // Khóa thứ tự thưa: các slide còn lại giữ nguyên khóa, không cần re-index.
     @Transactional
     public void deleteSlideAndReindex(Long slideId, Long currentUserId) {
         Slide slideToDelete = slideRepository.findById(slideId)
@@ -480,21 +839,91 @@ public class SlideService {
             throw new SecurityException("このスライドを削除する権限がありません。");
         }
         
-        Integer deletedIndex = slideToDelete.getSlideIndex();
-        
         // Xóa Slide
+        autosaveBuffer.discard(slideId);
         slideRepository.delete(slideToDelete);
         
-        // Tái lập chỉ mục (re-index) các slide còn lại
-        List<Slide> slides = slideRepository.findByPresentationIdOrderBySlideIndexAsc(presentation.getId());
-        for (Slide slide : slides) {
-            if (slide.getSlideIndex() > deletedIndex) {
-                slide.setSlideIndex(slide.getSlideIndex() - 1);
-                slideRepository.save(slide);
+        // historyLogService.logAction("DELETE_SLIDE", "SLIDE", slideId, currentUserId);
+    }
+
+    // --- 4b. Di chuyển Slide đến vị trí position (1-based) ---
+    @Transactional
+    public SlideResponse moveSlide(Long slideId, int position, Long currentUserId) {
+        Slide slide = slideRepository.findById(slideId)
+            .orElseThrow(() -> new ResourceNotFoundException("スライドが存在しません: " + slideId));
+
+        Long projectId = slide.getPresentation().getId();
+        Presentation presentation = presentationRepository.findByIdForUpdate(projectId)
+            .orElseThrow(() -> new ResourceNotFoundException("プロジェクトが存在しません: " + projectId));
+
+        if (!presentation.getOwner().getId().equals(currentUserId)) {
+            throw new SecurityException("このスライドを編集する権限がありません。");
+        }
+
+        String contentJson = slide.getContentJson();
+        int newIndex = orderKeyForPosition(projectId, slideId, position);
+        slideRepository.updateSlideIndex(slideId, newIndex);
+
+        presentationRepository.touchEditedDate(projectId, Instant.now());
+
+        return SlideResponse.builder()
+                .id(slideId)
+                .slideIndex(ordinalOf(projectId, newIndex))
+                .contentJson(contentJson)
+                .version(slide.getVersion())
+                .build();
+    }
+
+    /**
+     * Khóa thứ tự cho vị trí {@code position} (1-based) giữa các slide còn lại của deck
+     * ({@code excludeSlideId} = slide đang di chuyển). {@code null} = cuối deck.
+     * Lấy điểm giữa của 2 khóa liền kề; nếu hết khoảng trống thì đánh số lại cả deck (1 câu UPDATE) rồi tính lại.
+     */
+    private int orderKeyForPosition(Long presentationId, Long excludeSlideId, Integer position) {
+        Long exclude = excludeSlideId != null ? excludeSlideId : -1L;
+        Integer key = tryOrderKey(presentationId, exclude, position);
+        if (key == null) {
+            slideRepository.renumberSlideIndexes(presentationId, Slide.ORDER_GAP);
+            key = tryOrderKey(presentationId, exclude, position);
+        }
+        if (key == null) {
+            throw new IllegalStateException("スライドの順序を更新できません。");
+        }
+        return key;
+    }
+
+    private Integer tryOrderKey(Long presentationId, Long excludeSlideId, Integer position) {
+        int prev;
+        Integer next;
+        if (position == null || position <= 1) {
+            if (position == null) {
+                prev = slideRepository.findMaxSlideIndex(presentationId, excludeSlideId);
+                next = null;
+            } else {
+                prev = 0;
+                List<Integer> first = slideRepository.findAdjacentSlideIndexes(presentationId, excludeSlideId, 0);
+                next = first.isEmpty() ? null : first.get(0);
+            }
+        } else {
+            List<Integer> keys = slideRepository.findAdjacentSlideIndexes(presentationId, excludeSlideId, position - 2);
+            if (keys.isEmpty()) {
+                // Vị trí vượt quá số slide => thêm vào cuối.
+                prev = slideRepository.findMaxSlideIndex(presentationId, excludeSlideId);
+                next = null;
+            } else {
+                prev = keys.get(0);
+                next = keys.size() > 1 ? keys.get(1) : null;
             }
         }
-        
-        // historyLogService.logAction("DELETE_SLIDE", "SLIDE", slideId, currentUserId);
+
+        if (next == null) {
+            return prev <= Integer.MAX_VALUE - Slide.ORDER_GAP ? prev + Slide.ORDER_GAP : null;
+        }
+        return next - prev >= 2 ? prev + (next - prev) / 2 : null;
+    }
+
+    private int ordinalOf(Long presentationId, int slideIndex) {
+        return (int) slideRepository.countByPresentationIdAndSlideIndexLessThan(presentationId, slideIndex) + 1;
     }
 
     // --- 5. Logic Export File (No. 8) ---
@@ -513,6 +942,17 @@ public class SlideService {
             ? request.getFont().trim()
             : "Noto Sans JP";
 
+        return new ByteArrayResource(renderExport(presentation, format, fontFamily));
+    }
+
+    /**
+     * Render 1 presentation ra bytes theo định dạng (PPTX / PDF / PNG-zip).
+     * Không kiểm tra quyền: caller phải kiểm tra owner trước (export đơn lẻ và bulk export dùng chung).
+     */
+    public byte[] renderExport(Presentation presentation, String format, String fontFamily) {
+        Long projectId = presentation.getId();
+        autosaveBuffer.flushPresentation(projectId);
+
         if ("PPTX".equals(format)) {
             try (org.apache.poi.xslf.usermodel.XMLSlideShow ppt = new org.apache.poi.xslf.usermodel.XMLSlideShow()) {
                 java.awt.Dimension pg = ppt.getPageSize();
@@ -594,19 +1034,14 @@ public class SlideService {
                             String imgUrl = structuredMode && structured != null ? structured.getAt(structured.images, slotIndex) : resolveElementText(el, data, "画像");
                             if (imgUrl != null && imgUrl.startsWith("http")) {
                                 try {
-                                    HttpClient httpClient = HttpClient.newBuilder().build();
-                                    HttpRequest httpReq = HttpRequest.newBuilder().uri(URI.create(imgUrl)).build();
-                                    HttpResponse<byte[]> response = httpClient.send(httpReq, HttpResponse.BodyHandlers.ofByteArray());
-                                    try (java.io.InputStream in = new java.io.ByteArrayInputStream(response.body())) {
-                                        BufferedImage img = ImageIO.read(in);
-                                        if (img != null) {
-                                            java.io.ByteArrayOutputStream imgBytes = new java.io.ByteArrayOutputStream();
-                                            ImageIO.write(img, "png", imgBytes);
-                                            org.apache.poi.sl.usermodel.PictureData picData = ppt.addPicture(imgBytes.toByteArray(), org.apache.poi.sl.usermodel.PictureData.PictureType.PNG);
-                                            org.apache.poi.xslf.usermodel.XSLFPictureShape pic = pptSlide.createPicture(picData);
-                                            pic.setAnchor(anchor);
-                                            continue;
-                                        }
+                                    BufferedImage img = fetchRemoteImage(imgUrl);
+                                    if (img != null) {
+                                        java.io.ByteArrayOutputStream imgBytes = new java.io.ByteArrayOutputStream();
+                                        ImageIO.write(img, "png", imgBytes);
+                                        org.apache.poi.sl.usermodel.PictureData picData = ppt.addPicture(imgBytes.toByteArray(), org.apache.poi.sl.usermodel.PictureData.PictureType.PNG);
+                                        org.apache.poi.xslf.usermodel.XSLFPictureShape pic = pptSlide.createPicture(picData);
+                                        pic.setAnchor(anchor);
+                                        continue;
                                     }
                                 } catch (Exception e) {
                                     // Nếu lỗi thì vẽ placeholder text
@@ -673,7 +1108,7 @@ public class SlideService {
 
                 java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
                 ppt.write(baos);
-                return new ByteArrayResource(baos.toByteArray());
+                return baos.toByteArray();
             } catch (Exception e) {
                 log.error("Failed to generate PPTX export", e);
                 throw new IllegalArgumentException("PPTX のエクスポートに失敗しました。");
@@ -683,8 +1118,7 @@ public class SlideService {
         if ("PDF".equals(format)) {
             try {
                 List<Slide> slides = slideRepository.findByPresentationIdOrderBySlideIndexAsc(projectId);
-                byte[] pdf = generatePdfExport(presentation, slides, fontFamily);
-                return new ByteArrayResource(pdf);
+                return generatePdfExport(presentation, slides, fontFamily);
             } catch (Exception e) {
                 log.error("Failed to generate PDF export", e);
                 String msg = e.getMessage();
@@ -695,8 +1129,7 @@ public class SlideService {
         if ("PNG".equals(format)) {
             try {
                 List<Slide> slides = slideRepository.findByPresentationIdOrderBySlideIndexAsc(projectId);
-                byte[] zip = generatePngZipExport(presentation, slides, fontFamily);
-                return new ByteArrayResource(zip);
+                return generatePngZipExport(presentation, slides, fontFamily);
             } catch (Exception e) {
                 log.error("Failed to generate PNG export", e);
                 throw new IllegalArgumentException("PNG のエクスポートに失敗しました。");
@@ -714,134 +1147,162 @@ public class SlideService {
         try (ZipOutputStream zos = new ZipOutputStream(baos, StandardCharsets.UTF_8)) {
             int i = 1;
             for (Slide slide : slides) {
-                BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-                Graphics2D g = image.createGraphics();
-                try {
-                    g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-                    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                    g.setColor(Color.WHITE);
-                    g.fillRect(0, 0, width, height);
+                BufferedImage image = renderSlideImage(presentation.getTitle(), slide.getContentJson(), fontFamily, width, height);
 
-                    Map<String, Object> data = new java.util.HashMap<>(extractDataMap(slide.getContentJson()));
-                    String title = asString(data.getOrDefault("title", data.getOrDefault("name", presentation.getTitle())));
-                    String content = asString(data.getOrDefault("content", ""));
+                ByteArrayOutputStream pngOut = new ByteArrayOutputStream();
+                ImageIO.write(image, "png", pngOut);
 
-                    List<Map<String, Object>> elements = extractElements(slide.getContentJson());
-                    if (elements.isEmpty()) {
-                        // Layout fallback tối thiểu (title + text) nếu thiếu elements.
-                        elements = List.of(
-                                Map.of("id", 1, "type", "title", "x", 40, "y", 40, "w", 720, "h", 90,
-                                        "style", Map.of("fontSize", 40, "bold", true, "italic", false, "underline", false, "align", "left", "color", "#111827", "fontFamily", fontFamily)),
-                                Map.of("id", 2, "type", "text", "x", 40, "y", 150, "w", 720, "h", 360,
-                                        "style", Map.of("fontSize", 18, "bold", false, "italic", false, "underline", false, "align", "left", "color", "#111827", "fontFamily", fontFamily))
-                        );
-                    }
+                ZipEntry entry = new ZipEntry(String.format("slide-%03d.png", i++));
+                zos.putNextEntry(entry);
+                zos.write(pngOut.toByteArray());
+                zos.closeEntry();
+            }
+        }
+        return baos.toByteArray();
+    }
 
-                    List<String> paragraphs = splitParagraphs(content);
-                    int paragraphIndex = 0;
+    /**
+     * Render 1 slide ra PNG với kích thước bất kỳ (thumbnail dùng độ phân giải thấp).
+     * Cùng đường raster với export PNG; không kiểm tra quyền.
+     */
+    public byte[] renderSlidePng(String presentationTitle, String contentJson, String fontFamily, int width, int height) throws IOException {
+        BufferedImage image = renderSlideImage(presentationTitle, contentJson, fontFamily, width, height);
+        ByteArrayOutputStream pngOut = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", pngOut);
+        return pngOut.toByteArray();
+    }
 
-                    StructuredContent structured = null;
-                    boolean structuredMode = isStructuredContent(content);
-                    if (structuredMode) {
-                        structured = parseStructuredContent(content);
-                        if (structured != null && !structured.dates.isEmpty()) {
-                            String firstDate = asString(structured.dates.get(0));
-                            if (!firstDate.isBlank() && asString(data.get("date")).isBlank()) {
-                                data.put("date", firstDate);
-                            }
-                        }
-                    }
+    // Tải ảnh http(s) của phần tử image (timeout ở trên); trả về null nếu không đọc được ảnh.
+    private static BufferedImage fetchRemoteImage(String imgUrl) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(imgUrl)).timeout(IMAGE_REQUEST_TIMEOUT).build();
+        HttpResponse<byte[]> response = IMAGE_HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() / 100 != 2) {
+            return null;
+        }
+        try (java.io.InputStream in = new java.io.ByteArrayInputStream(response.body())) {
+            return ImageIO.read(in);
+        }
+    }
 
-                    java.util.Map<Integer, Integer> slotIndexByElementId = buildSlotIndexByElementId(elements);
-
-                    // Sắp xếp thứ tự render cố định (trên->dưới, trái->phải)
-                    ArrayList<Map<String, Object>> ordered = new ArrayList<>(elements);
-                    ordered.sort((a, b) -> {
-                        double ay = toDouble(a.get("y"), 0);
-                        double by = toDouble(b.get("y"), 0);
-                        if (ay != by) return Double.compare(ay, by);
-                        double ax = toDouble(a.get("x"), 0);
-                        double bx = toDouble(b.get("x"), 0);
-                        return Double.compare(ax, bx);
-                    });
+    // Vẽ slide theo toạ độ của editor (800x600) rồi scale về width x height.
+    private BufferedImage renderSlideImage(String presentationTitle, String contentJson, String fontFamily, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            if (width != (int) EDITOR_CANVAS_W || height != (int) EDITOR_CANVAS_H) {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.scale(width / EDITOR_CANVAS_W, height / EDITOR_CANVAS_H);
+            }
 
-                    for (Map<String, Object> el : ordered) {
-                        String type = asString(el.get("type")).toLowerCase(Locale.ROOT);
-                        int x = (int) Math.round(toDouble(el.get("x"), 0));
-                        int y = (int) Math.round(toDouble(el.get("y"), 0));
-                        int w = (int) Math.round(toDouble(el.get("w"), 0));
-                        int h = (int) Math.round(toDouble(el.get("h"), 0));
-                        Map<String, Object> style = (el.get("style") instanceof Map<?, ?> m) ? (Map<String, Object>) m : Map.of();
+            Map<String, Object> data = new java.util.HashMap<>(extractDataMap(contentJson));
+            String title = asString(data.getOrDefault("title", data.getOrDefault("name", presentationTitle)));
+            String content = asString(data.getOrDefault("content", ""));
+
+            List<Map<String, Object>> elements = extractElements(contentJson);
+            if (elements.isEmpty()) {
+                // Layout fallback tối thiểu (title + text) nếu thiếu elements.
+                elements = List.of(
+                        Map.of("id", 1, "type", "title", "x", 40, "y", 40, "w", 720, "h", 90,
+                                "style", Map.of("fontSize", 40, "bold", true, "italic", false, "underline", false, "align", "left", "color", "#111827", "fontFamily", fontFamily)),
+                        Map.of("id", 2, "type", "text", "x", 40, "y", 150, "w", 720, "h", 360,
+                                "style", Map.of("fontSize", 18, "bold", false, "italic", false, "underline", false, "align", "left", "color", "#111827", "fontFamily", fontFamily))
+                );
+            }
 
-                        int slotIndex = slotIndexByElementId.getOrDefault(toInt(el.get("id"), -1), toSlotIndex(el.get("slotIndex")));
+            List<String> paragraphs = splitParagraphs(content);
+            int paragraphIndex = 0;
+
+            StructuredContent structured = null;
+            boolean structuredMode = isStructuredContent(content);
+            if (structuredMode) {
+                structured = parseStructuredContent(content);
+                if (structured != null && !structured.dates.isEmpty()) {
+                    String firstDate = asString(structured.dates.get(0));
+                    if (!firstDate.isBlank() && asString(data.get("date")).isBlank()) {
+                        data.put("date", firstDate);
+                    }
+                }
+            }
 
-                        if ("image".equals(type)) {
-                            String imgUrl = null;
-                            if (structuredMode && structured != null) {
-                                imgUrl = structured.getAt(structured.images, slotIndex);
-                            }
-                            if (imgUrl != null && imgUrl.startsWith("http")) {
-                                try {
-                                    HttpClient client = HttpClient.newBuilder().build();
-                                    HttpRequest request = HttpRequest.newBuilder().uri(URI.create(imgUrl)).build();
-                                    HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
-                                    try (java.io.InputStream in = new java.io.ByteArrayInputStream(response.body())) {
-                                        BufferedImage img = ImageIO.read(in);
-                                        if (img != null) {
-                                            g.drawImage(img, x, y, w, h, null);
-                                            continue;
-                                        }
-                                    }
-                                } catch (Exception e) {
-                                    // Nếu lỗi thì vẽ placeholder text
-                                    renderElementToGraphics(g, x, y, w, h, "[画像]", style, fontFamily);
-                                    continue;
-                                }
+            java.util.Map<Integer, Integer> slotIndexByElementId = buildSlotIndexByElementId(elements);
+
+            // Sắp xếp thứ tự render cố định (trên->dưới, trái->phải)
+            ArrayList<Map<String, Object>> ordered = new ArrayList<>(elements);
+            ordered.sort((a, b) -> {
+                double ay = toDouble(a.get("y"), 0);
+                double by = toDouble(b.get("y"), 0);
+                if (ay != by) return Double.compare(ay, by);
+                double ax = toDouble(a.get("x"), 0);
+                double bx = toDouble(b.get("x"), 0);
+                return Double.compare(ax, bx);
+            });
+
+            for (Map<String, Object> el : ordered) {
+                String type = asString(el.get("type")).toLowerCase(Locale.ROOT);
+                int x = (int) Math.round(toDouble(el.get("x"), 0));
+                int y = (int) Math.round(toDouble(el.get("y"), 0));
+                int w = (int) Math.round(toDouble(el.get("w"), 0));
+                int h = (int) Math.round(toDouble(el.get("h"), 0));
+                Map<String, Object> style = (el.get("style") instanceof Map<?, ?> m) ? (Map<String, Object>) m : Map.of();
+
+                int slotIndex = slotIndexByElementId.getOrDefault(toInt(el.get("id"), -1), toSlotIndex(el.get("slotIndex")));
+
+                if ("image".equals(type)) {
+                    String imgUrl = null;
+                    if (structuredMode && structured != null) {
+                        imgUrl = structured.getAt(structured.images, slotIndex);
+                    }
+                    if (imgUrl != null && imgUrl.startsWith("http")) {
+                        try {
+                            BufferedImage img = fetchRemoteImage(imgUrl);
+                            if (img != null) {
+                                g.drawImage(img, x, y, w, h, null);
+                                continue;
                             }
-                            // Nếu không phải link http hoặc lỗi thì vẽ placeholder
-                            renderElementToGraphics(g, x, y, w, h, (imgUrl == null || imgUrl.isBlank()) ? "[画像]" : imgUrl, style, fontFamily);
+                        } catch (Exception e) {
+                            // Nếu lỗi thì vẽ placeholder text
+                            renderElementToGraphics(g, x, y, w, h, "[画像]", style, fontFamily);
                             continue;
                         }
-                        String text;
-                        if ("title".equals(type)) {
-                            text = title;
-                        } else if ("text".equals(type) || "caption".equals(type)) {
-                            if (structuredMode && structured != null) {
-                                java.util.List<String> list = "caption".equals(type) ? structured.captions : structured.texts;
-                                text = structured.getAt(list, slotIndex);
-                            } else {
-                                text = paragraphIndex < paragraphs.size() ? paragraphs.get(paragraphIndex++) : "";
-                            }
-                        } else if ("date".equals(type)) {
-                            if (structuredMode && structured != null) {
-                                text = structured.getAt(structured.dates, slotIndex);
-                                if (text == null || text.isBlank()) {
-                                    text = java.time.LocalDate.now().toString();
-                                }
-                            } else {
-                                text = java.time.LocalDate.now().toString();
-                            }
-                        } else {
-                            text = asString(el.get("text"));
-                            if (text.contains("title")) text = title;
-                            if (text.contains("content")) text = content;
+                    }
+                    // Nếu không phải link http hoặc lỗi thì vẽ placeholder
+                    renderElementToGraphics(g, x, y, w, h, (imgUrl == null || imgUrl.isBlank()) ? "[画像]" : imgUrl, style, fontFamily);
+                    continue;
+                }
+                String text;
+                if ("title".equals(type)) {
+                    text = title;
+                } else if ("text".equals(type) || "caption".equals(type)) {
+                    if (structuredMode && structured != null) {
+                        java.util.List<String> list = "caption".equals(type) ? structured.captions : structured.texts;
+                        text = structured.getAt(list, slotIndex);
+                    } else {
+                        text = paragraphIndex < paragraphs.size() ? paragraphs.get(paragraphIndex++) : "";
+                    }
+                } else if ("date".equals(type)) {
+                    if (structuredMode && structured != null) {
+                        text = structured.getAt(structured.dates, slotIndex);
+                        if (text == null || text.isBlank()) {
+                            text = java.time.LocalDate.now().toString();
                         }
-                        renderElementToGraphics(g, x, y, w, h, text, style, fontFamily);
+                    } else {
+                        text = java.time.LocalDate.now().toString();
                     }
-                } finally {
-                    g.dispose();
+                } else {
+                    text = asString(el.get("text"));
+                    if (text.contains("title")) text = title;
+                    if (text.contains("content")) text = content;
                 }
-
-                ByteArrayOutputStream pngOut = new ByteArrayOutputStream();
-                ImageIO.write(image, "png", pngOut);
-
-                ZipEntry entry = new ZipEntry(String.format("slide-%03d.png", i++));
-                zos.putNextEntry(entry);
-                zos.write(pngOut.toByteArray());
-                zos.closeEntry();
+                renderElementToGraphics(g, x, y, w, h, text, style, fontFamily);
             }
+        } finally {
+            g.dispose();
         }
-        return baos.toByteArray();
+        return image;
     }
 
     private byte[] generatePdfExport(Presentation presentation, List<Slide> slides, String fontFamily) throws IOException {
@@ -939,17 +1400,12 @@ public class SlideService {
                             }
                             if (imgUrl != null && imgUrl.startsWith("http")) {
                                 try {
-                                    HttpClient client = HttpClient.newBuilder().build();
-                                    HttpRequest request = HttpRequest.newBuilder().uri(URI.create(imgUrl)).build();
-                                    HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
-                                    try (java.io.InputStream in = new java.io.ByteArrayInputStream(response.body())) {
-                                        BufferedImage img = ImageIO.read(in);
-                                        if (img != null) {
-                                            PDImageXObject pdImage = org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory.createFromImage(doc, img);
-                                            float yPdf = height - (y + h);
-                                            cs.drawImage(pdImage, x, yPdf, w, h);
-                                            continue;
-                                        }
+                                    BufferedImage img = fetchRemoteImage(imgUrl);
+                                    if (img != null) {
+                                        PDImageXObject pdImage = org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory.createFromImage(doc, img);
+                                        float yPdf = height - (y + h);
+                                        cs.drawImage(pdImage, x, yPdf, w, h);
+                                        continue;
                                     }
                                 } catch (Exception e) {
                                     // Nếu lỗi thì vẽ placeholder
@@ -1283,23 +1739,6 @@ public class SlideService {
         return null;
     }
 
-    /**
-     * Tạo chuỗi JSON nội dung theo dạng "cũ" cho Quick Create.
-     * Lưu ý: hàm này dùng {@link String#format} để ghép chuỗi trực tiếp, vì vậy chỉ nên xem như phương án legacy/fallback.
-     */
-    private String generateContentJson(QuickCreateRequest request) {
-        // Mockup: map các trường Quick Create vào JSON.
-        return String.format("""
-            {
-              "subject": "%s",
-              "lesson": "%s",
-              "title": "%s",
-              "content": "%s",
-              "type": "text-slide"
-            }
-            """, request.getSubject(), request.getLesson(), request.getTitle(), request.getContent());
-    }
-    
     /**
      * Tạo JSON nội dung rỗng khi thêm slide mới.
      * {@code layoutJson} được nhúng trực tiếp vào JSON nên cần là một JSON hợp lệ (object) từ template.
@@ -1308,63 +1747,37 @@ public class SlideService {
         return String.format("{\"layout\": %s, \"data\": {\"title\": \"新しいスライド\", \"content\": \"\"}}", layoutJson);
     }
 
+    // Layout của template (dữ liệu trong DB, đã kiểm tra khi lưu template); slide mẫu không có layout => "layout": null.
     private String generateContentJsonWithLayout(String layoutJson, QuickCreateRequest request) {
-        try {
-            String dataJson = objectMapper.writeValueAsString(Map.of(
-                    "subject", request.getSubject(),
-                    "lesson", request.getLesson(),
-                    "title", request.getTitle(),
-                    "content", request.getContent(),
-                    "type", "text-slide"
-            ));
-            return String.format("{\"layout\": %s, \"data\": %s}", layoutJson, dataJson);
-        } catch (Exception e) {
-            // Nếu serialize thất bại thì fallback sang cách ghép chuỗi JSON kiểu cũ.
-            log.warn("Failed to serialize quick-create content data; falling back to generateContentJson", e);
-            return generateContentJson(request);
-        }
+        JsonNode layout = layoutJson == null || layoutJson.isBlank()
+                ? objectMapper.nullNode() : parseLayoutJson(layoutJson);
+        return generateContentJsonWithLayout(layout, request);
     }
-    
-    /**
-     * Cập nhật {@code title}/{@code content} vào chuỗi JSON hiện có.
-     * - Ưu tiên cập nhật vào object lồng {@code data} nếu tồn tại.
-     * - Nếu không có {@code data}, fallback sang dạng legacy (title/content ở root).
-     * - Nếu parse JSON thất bại, fallback cuối cùng là thay chuỗi theo kiểu mock cũ.
-     */
-    private String updateJsonWithTitleAndContent(String existingJson, String title, String content) {
-        if (existingJson == null || existingJson.trim().isEmpty()) {
-            try {
-                String dataJson = objectMapper.writeValueAsString(Map.of("title", title, "content", content));
-                return String.format("{\"data\": %s}", dataJson);
-            } catch (Exception e) {
-                return existingJson;
-            }
-        }
 
-        try {
-            Map<String, Object> root = objectMapper.readValue(existingJson, Map.class);
+    // {"layout": ..., "data": {...}} dựng bằng ObjectNode: không ghép chuỗi, giá trị null vẫn hợp lệ.
+    private String generateContentJsonWithLayout(JsonNode layout, QuickCreateRequest request) {
+        ObjectNode content = objectMapper.createObjectNode();
+        content.set("layout", layout);
+        content.putObject("data")
+                .put("subject", request.getSubject())
+                .put("lesson", request.getLesson())
+                .put("title", request.getTitle())
+                .put("content", request.getContent())
+                .put("type", "text-slide");
+        return content.toString();
+    }
 
-            // Ưu tiên cập nhật vào object lồng `data` nếu có.
-            Object dataObj = root.get("data");
-            if (dataObj instanceof Map<?, ?> dataMapRaw) {
-                Map<String, Object> dataMap = (Map<String, Object>) dataMapRaw;
-                dataMap.put("title", title);
-                dataMap.put("content", content);
-                root.put("data", dataMap);
-                return objectMapper.writeValueAsString(root);
+    private JsonNode parseLayoutJson(String layoutJson) {
+        try {
+            JsonNode layout = objectMapper.readTree(layoutJson);
+            if (layout != null && layout.isObject()) {
+                return layout;
             }
-
-            // Legacy: title/content nằm trực tiếp ở root.
-            root.put("title", title);
-            root.put("content", content);
-            return objectMapper.writeValueAsString(root);
-        } catch (Exception e) {
-            // Fallback cuối cùng: thay chuỗi theo cách mock cũ.
-            return existingJson.replace("新しいスライド", title)
-                    .replace("\"content\": \"\"", "\"content\": \"" + content + "\"");
+        } catch (Exception ignored) {
         }
+        throw new IllegalArgumentException("レイアウトが正しいJSON形式ではありません。");
     }
-
+    
     private Map<String, Object> extractDataMap(String contentJson) {
         if (contentJson == null || contentJson.trim().isEmpty()) return Map.of();
         try {
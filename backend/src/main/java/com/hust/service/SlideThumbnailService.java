@@ -0,0 +1,251 @@
+package com.hust.service;
+
+import com.hust.exception.ResourceNotFoundException;
+import com.hust.repository.SlideRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Thumbnail PNG độ phân giải thấp cho từng slide (dashboard / filmstrip).
+ * - Render bằng cùng đường raster với export PNG ({@link SlideService#renderSlidePng}).
+ * - Sau mỗi lần ghi nội dung slide (sau commit), slide được đánh dấu và render lại trên thread nền
+ *   khi đã yên {@code slide.thumbnail.debounce-ms}: nhiều lần lưu liên tiếp chỉ render 1 lần.
+ * - File lưu trên đĩa theo nội dung ({@code <dir>/<2 ký tự đầu>/<sha256>.png}); slides.thumbnail_key trỏ tới file hiện tại.
+ *   Cùng nội dung => cùng file, không render lại.
+ * - File cũ bị xóa khi không còn slide nào trỏ tới (ngay khi khóa bị thay, và quét định kỳ cho slide đã bị xóa).
+ */
+@Service
+@Slf4j
+public class SlideThumbnailService {
+
+    // Tăng khi đổi cách render để mọi thumbnail được tạo lại với khóa mới.
+    private static final String RENDER_REVISION = "1";
+    private static final String FONT_FAMILY = "Noto Sans JP";
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    /** Phát ra sau khi nội dung slide thay đổi (SlideService, SlideAutosaveBuffer). */
+    public record SlideContentChanged(Long slideId) {
+    }
+
+    public record Thumbnail(String key, Path file) {
+    }
+
+    // slideId -> thời điểm (ms) được phép render; mỗi lần ghi mới đẩy lùi thời điểm này.
+    private final Map<Long, Long> dueAt = new ConcurrentHashMap<>();
+    private final Set<Long> rendering = ConcurrentHashMap.newKeySet();
+
+    @Autowired private SlideRepository slideRepository;
+    @Autowired private SlideService slideService;
+
+    @Autowired
+    @Qualifier("thumbnailRenderExecutor")
+    private ThreadPoolTaskExecutor thumbnailRenderExecutor;
+
+    @Value("${slide.thumbnail.dir:${java.io.tmpdir}/quickslide-thumbnails}")
+    private String thumbnailDir;
+
+    @Value("${slide.thumbnail.width:320}")
+    private int width;
+
+    @Value("${slide.thumbnail.debounce-ms:3000}")
+    private long debounceMs;
+
+    // File mới hơn khoảng này không bị quét xóa: có thể vừa render xong mà khóa chưa được ghi vào slide.
+    @Value("${slide.thumbnail.sweep-grace-minutes:60}")
+    private long sweepGraceMinutes;
+
+    // AFTER_COMMIT: render phải đọc được nội dung vừa ghi; ngoài transaction thì chạy ngay.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSlideContentChanged(SlideContentChanged event) {
+        dueAt.put(event.slideId(), System.currentTimeMillis() + debounceMs);
+    }
+
+    @Scheduled(fixedDelayString = "${slide.thumbnail.dispatch-interval-ms:1000}")
+    public void dispatchDue() {
+        if (dueAt.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Long> e : dueAt.entrySet()) {
+            Long slideId = e.getKey();
+            Long due = e.getValue();
+            // Chưa tới hạn, hoặc đang render dở => để lần sau (không render 2 bản cùng lúc cho 1 slide).
+            if (due > now || !rendering.add(slideId)) {
+                continue;
+            }
+            if (!dueAt.remove(slideId, due)) {
+                rendering.remove(slideId);
+                continue;
+            }
+            try {
+                thumbnailRenderExecutor.execute(() -> {
+                    try {
+                        regenerate(slideId);
+                    } catch (Exception ex) {
+                        log.warn("Thumbnail: failed to render slide {}", slideId, ex);
+                    } finally {
+                        rendering.remove(slideId);
+                    }
+                });
+            } catch (TaskRejectedException ex) {
+                rendering.remove(slideId);
+                dueAt.putIfAbsent(slideId, now + debounceMs);
+            }
+        }
+    }
+
+    // --- GET /api/slides/{id}/thumbnail: trả về file hiện tại; chưa có thì xếp lịch render, empty = chưa sẵn sàng ---
+    public Optional<Thumbnail> getThumbnail(Long slideId, Long currentUserId) {
+        SlideRepository.SlideThumbnailRef ref = slideRepository.findThumbnailRefById(slideId)
+            .orElseThrow(() -> new ResourceNotFoundException("スライドが存在しません: " + slideId));
+
+        if (!ref.getOwnerId().equals(currentUserId)) {
+            throw new SecurityException("このスライドを閲覧する権限がありません。");
+        }
+
+        String key = ref.getThumbnailKey();
+        if (key == null || !Files.exists(fileOf(key))) {
+            // Slide mới tạo / thư mục thumbnail bị dọn: không render trên thread request,
+            // đánh dấu tới hạn ngay để dispatchDue render trên thumbnailRenderExecutor (đang render dở thì thôi).
+            if (!rendering.contains(slideId)) {
+                dueAt.putIfAbsent(slideId, System.currentTimeMillis());
+            }
+            return Optional.empty();
+        }
+        return Optional.of(new Thumbnail(key, fileOf(key)));
+    }
+
+    // Render (nếu file của nội dung hiện tại chưa có) và trỏ slides.thumbnail_key tới file đó. null = slide đã bị xóa.
+    private String regenerate(Long slideId) throws IOException {
+        SlideRepository.SlideThumbnailSource source = slideRepository.findThumbnailSourceById(slideId).orElse(null);
+        if (source == null) {
+            return null;
+        }
+        int height = width * 3 / 4;
+        String key = sha256(RENDER_REVISION + "\u0000" + width + "x" + height + "\u0000"
+                + source.getPresentationTitle() + "\u0000" + source.getContentJson());
+
+        Path file = fileOf(key);
+        if (!Files.exists(file)) {
+            byte[] png = slideService.renderSlidePng(source.getPresentationTitle(), source.getContentJson(), FONT_FAMILY, width, height);
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(tmp, png);
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        String previousKey = source.getThumbnailKey();
+        if (!key.equals(previousKey)
+                && slideRepository.updateThumbnailKey(slideId, source.getVersion(), key) > 0
+                && previousKey != null) {
+            deleteIfUnreferenced(previousKey);
+        }
+        return key;
+    }
+
+    // Cùng nội dung => cùng khóa: chỉ xóa khi không slide nào khác còn dùng file này.
+    // (Nếu 1 slide vừa trỏ lại tới khóa này thì GET thumbnail sẽ xếp lịch render lại file.)
+    private void deleteIfUnreferenced(String key) {
+        if (slideRepository.existsByThumbnailKey(key)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(fileOf(key));
+        } catch (IOException e) {
+            log.warn("Thumbnail: failed to delete {}", key, e);
+        }
+    }
+
+    // --- Dọn file không còn slide nào trỏ tới (slide / presentation đã bị xóa) và file tạm bị bỏ dở ---
+    @Scheduled(cron = "${slide.thumbnail.sweep-cron:0 30 4 * * *}")
+    public void sweepUnreferenced() {
+        Path root = Paths.get(thumbnailDir);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - sweepGraceMinutes * 60_000L;
+        Map<String, Path> candidates = new HashMap<>();
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (!Files.isRegularFile(file) || Files.getLastModifiedTime(file).toMillis() > cutoff) {
+                    continue;
+                }
+                if (name.endsWith(".tmp")) {
+                    deleted += Files.deleteIfExists(file) ? 1 : 0;
+                } else if (name.endsWith(".png")) {
+                    candidates.put(name.substring(0, name.length() - 4), file);
+                    if (candidates.size() >= SWEEP_BATCH_SIZE) {
+                        deleted += deleteUnreferenced(candidates);
+                        candidates.clear();
+                    }
+                }
+            }
+            deleted += deleteUnreferenced(candidates);
+        } catch (IOException e) {
+            log.warn("Thumbnail: sweep of {} failed", root, e);
+        }
+        if (deleted > 0) {
+            log.info("Thumbnail: removed {} unreferenced file(s)", deleted);
+        }
+    }
+
+    private int deleteUnreferenced(Map<String, Path> candidates) throws IOException {
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+        Set<String> referenced = new HashSet<>(slideRepository.findReferencedThumbnailKeys(candidates.keySet()));
+        int deleted = 0;
+        for (Map.Entry<String, Path> e : candidates.entrySet()) {
+            if (!referenced.contains(e.getKey()) && Files.deleteIfExists(e.getValue())) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private Path fileOf(String key) {
+        return Paths.get(thumbnailDir, key.substring(0, 2), key + ".png");
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
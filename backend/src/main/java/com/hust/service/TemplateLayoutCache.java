@@ -0,0 +1,146 @@
+package com.hust.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache layout đã "biên dịch" của TemplateSlide (key: TemplateSlide.id + hash của layoutJson).
+ * Quick create, batch và tạo presentation từ template dùng chung, nên cùng một layout
+ * chỉ bị parse 1 lần thay vì 1 lần / slide được sinh ra.
+ *
+ * Layout đổi nội dung thì hash đổi => entry cũ tự bị compile lại; TemplateService
+ * vẫn gọi {@link #evict} khi cập nhật/xóa template slide để giải phóng entry cũ.
+ */
+@Component
+@Slf4j
+public class TemplateLayoutCache {
+
+    public static final String EMPTY_LAYOUT_JSON = "{\"elements\": []}";
+
+    // Giới hạn đơn giản: vượt ngưỡng thì xóa hết, các layout đang dùng sẽ được compile lại.
+    private static final int MAX_ENTRIES = 2000;
+
+    /**
+     * Layout đã parse. {@code json} là layout gốc (đã kiểm tra parse được), nhúng thẳng vào
+     * content JSON mà không cần serialize lại. Mọi field đều chỉ đọc: {@code tree} được
+     * chia sẻ giữa các thread, caller không được sửa (cần sửa thì {@code deepCopy()}).
+     */
+    public record CompiledLayout(
+            int hash,
+            String json,
+            JsonNode tree,
+            List<JsonNode> elements,
+            List<JsonNode> textBoxes,
+            Map<String, Integer> slotCounts
+    ) {
+        public int textBoxCount() {
+            return textBoxes.size();
+        }
+
+        public int slotCount(String type) {
+            return slotCounts.getOrDefault(type.toLowerCase(Locale.ROOT), 0);
+        }
+    }
+
+    @Autowired private ObjectMapper objectMapper;
+
+    private final Map<Long, CompiledLayout> cache = new ConcurrentHashMap<>();
+
+    private volatile CompiledLayout emptyLayout;
+
+    /**
+     * Lấy layout đã compile. {@code templateSlideId == null} (layout gửi kèm request)
+     * thì compile trực tiếp, không lưu cache.
+     */
+    public CompiledLayout get(Long templateSlideId, String layoutJson) {
+        if (layoutJson == null || layoutJson.isBlank()) {
+            return empty();
+        }
+        if (templateSlideId == null) {
+            return compile(layoutJson);
+        }
+
+        int hash = layoutJson.hashCode();
+        CompiledLayout cached = cache.get(templateSlideId);
+        if (cached != null && cached.hash() == hash && cached.json().equals(layoutJson)) {
+            return cached;
+        }
+
+        CompiledLayout compiled = compile(layoutJson);
+        if (cache.size() >= MAX_ENTRIES) {
+            cache.clear();
+        }
+        cache.put(templateSlideId, compiled);
+        return compiled;
+    }
+
+    public void evict(Collection<Long> templateSlideIds) {
+        if (templateSlideIds == null) return;
+        for (Long id : templateSlideIds) {
+            if (id != null) cache.remove(id);
+        }
+    }
+
+    public CompiledLayout empty() {
+        CompiledLayout e = emptyLayout;
+        if (e == null) {
+            e = compile(EMPTY_LAYOUT_JSON);
+            emptyLayout = e;
+        }
+        return e;
+    }
+
+    private CompiledLayout compile(String layoutJson) {
+        JsonNode tree;
+        try {
+            tree = objectMapper.readTree(layoutJson);
+        } catch (Exception e) {
+            // Giữ hành vi cũ: layout hỏng vẫn được nhúng nguyên văn, chỉ là không có element nào.
+            log.warn("Failed to parse template layout JSON; treating it as having no elements", e);
+            tree = null;
+        }
+
+        List<JsonNode> elements = new ArrayList<>();
+        JsonNode elementsNode = tree != null ? tree.get("elements") : null;
+        if (elementsNode != null && elementsNode.isArray()) {
+            for (JsonNode el : elementsNode) {
+                if (el.isObject()) elements.add(el);
+            }
+        }
+
+        Map<String, Integer> slotCounts = new HashMap<>();
+        List<JsonNode> textBoxes = new ArrayList<>();
+        for (JsonNode el : elements) {
+            String type = el.path("type").asText("").toLowerCase(Locale.ROOT);
+            slotCounts.merge(type, 1, Integer::sum);
+            if ("text".equals(type) || "caption".equals(type)) {
+                textBoxes.add(el);
+            }
+        }
+        // Thứ tự đọc: trên xuống dưới, trái sang phải.
+        textBoxes.sort(Comparator
+                .comparingDouble((JsonNode n) -> n.path("y").asDouble(0))
+                .thenComparingDouble(n -> n.path("x").asDouble(0)));
+
+        return new CompiledLayout(
+                layoutJson.hashCode(),
+                layoutJson,
+                tree,
+                List.copyOf(elements),
+                List.copyOf(textBoxes),
+                Map.copyOf(slotCounts)
+        );
+    }
+}
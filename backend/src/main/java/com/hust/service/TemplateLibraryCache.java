@@ -0,0 +1,87 @@
+package com.hust.service;
+
+import com.hust.dto.response.TemplateResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache thư viện template public (GET /api/templates?type=public): giống nhau với mọi người xem,
+ * đọc nhiều / ghi ít => dựng 1 lần (query + map DTO + preview), dùng lại đến khi có template bị tạo/sửa/xóa.
+ *
+ * {@link #invalidate()} xóa snapshot sau khi transaction ghi commit. Bản dựng bắt đầu trước lần
+ * invalidate (có thể đã đọc dữ liệu cũ) không được lưu vào cache.
+ */
+@Component
+public class TemplateLibraryCache {
+
+    /** Danh sách đã dựng (không sửa được) và ETag tương ứng. */
+    public record PublicLibrary(List<TemplateResponse> templates, String etag) {
+    }
+
+    private final AtomicLong generation = new AtomicLong();
+    private volatile PublicLibrary snapshot;
+
+    public PublicLibrary get(Supplier<List<TemplateResponse>> loader) {
+        PublicLibrary current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        long startedAt = generation.get();
+        List<TemplateResponse> templates = List.copyOf(loader.get());
+        PublicLibrary built = new PublicLibrary(templates, etagOf(templates));
+        synchronized (this) {
+            if (generation.get() == startedAt) {
+                snapshot = built;
+            }
+        }
+        return built;
+    }
+
+    /** Gọi bên trong transaction ghi template: xóa cache sau commit (rollback thì giữ nguyên). */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clear();
+                }
+            });
+        } else {
+            clear();
+        }
+    }
+
+    private synchronized void clear() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    // ETag mạnh theo (id, editedAt, URL preview) của từng template; không phụ thuộc vào thời điểm dựng cache.
+    // URL preview có hash: thumbnail render nền đổi preview mà không đổi editedAt.
+    private static String etagOf(List<TemplateResponse> templates) {
+        StringBuilder sb = new StringBuilder();
+        for (TemplateResponse t : templates) {
+            sb.append(t.getId()).append(':')
+              .append(t.getEditedAt() != null ? t.getEditedAt().toEpochMilli() : 0L).append(':')
+              .append(t.getPreviewImageUrl()).append(',');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return "\"tl-" + hex + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.hust.service;
+
+import com.hust.exception.ResourceNotFoundException;
+import com.hust.repository.TemplateRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ảnh preview của template: lưu 1 lần trong templates.preview_image_url (data URL hoặc URL ngoài),
+ * phục vụ qua GET /api/templates/{id}/preview?v={previewHash}[&w=...] thay vì nhúng data URL vào JSON danh sách.
+ * - previewHash (SHA-256 của preview đã chuẩn hóa) nằm trong URL => response bất biến, cache lâu dài.
+ * - w: bản thu nhỏ (ảnh raster), làm tròn lên các chiều rộng cố định để số biến thể có giới hạn.
+ * - Ảnh đã decode / thu nhỏ được giữ trong LRU giới hạn theo tổng số byte.
+ */
+@Service
+@Slf4j
+public class TemplatePreviewService {
+
+    private static final String SVG_DATA_URL_PREFIX = "data:image/svg+xml;base64,";
+
+    // Chiều rộng cho phép của bản thu nhỏ (?w=...): yêu cầu được làm tròn lên giá trị gần nhất.
+    private static final int[] VARIANT_WIDTHS = {160, 320, 480, 640, 960, 1280};
+
+    private static final long MAX_CACHED_BYTES = 32L * 1024 * 1024;
+
+    /** Ảnh để trả về. */
+    public record Preview(String hash, String contentType, byte[] bytes, boolean isPublic) {
+    }
+
+    private record Image(String contentType, byte[] bytes) {
+    }
+
+    @Autowired private TemplateRepository templateRepository;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+
+    // SVG placeholder chỉ phụ thuộc vào bảng màu của theme => sinh 1 lần cho mỗi bảng màu.
+    private final Map<String, String> generatedPreviews = new ConcurrentHashMap<>();
+
+    // key: hash + ":" + width (0 = ảnh gốc). Truy cập trong synchronized (this).
+    private final LinkedHashMap<String, Image> images = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+
+    /** URL của preview (tương đối với context path /api) cho TemplateResponse.previewImageUrl. */
+    public String previewUrlOf(Long templateId, String previewHash) {
+        return "/templates/" + templateId + "/preview?v=" + previewHash;
+    }
+
+    /**
+     * Như trên, nhưng preview là ảnh ngoài (URL http/https do owner nhập) thì trả nguyên URL đó cho client tự tải:
+     * API không chuyển hướng tới URL do user cung cấp (tránh open redirect trên domain của API).
+     */
+    public String previewUrlOf(Long templateId, String previewHash, String storedPreview) {
+        return isExternalUrl(storedPreview) ? storedPreview.trim() : previewUrlOf(templateId, previewHash);
+    }
+
+    public static boolean isExternalUrl(String preview) {
+        if (preview == null) {
+            return false;
+        }
+        String trimmed = preview.trim();
+        return trimmed.startsWith("http://") || trimmed.startsWith("https://");
+    }
+
+    /** preview gửi lên là chính URL preview của template (client gửi lại nguyên giá trị đã nhận khi sửa). */
+    public boolean isPreviewUrl(String preview) {
+        return preview != null && preview.matches("(?s).*/templates/\\d+/preview(\\?.*)?");
+    }
+
+    public static String hashOf(String preview) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(preview.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // --- GET /api/templates/{id}/preview ---
+    @Transactional(readOnly = true)
+    public Preview getPreview(Long templateId, Integer width, Long currentUserId) {
+        TemplateRepository.TemplatePreviewSource source = templateRepository.findPreviewSourceById(templateId)
+            .orElseThrow(() -> new ResourceNotFoundException("テンプレートが存在しません。"));
+
+        // Cùng quy tắc với getTemplateSlides: template private yêu cầu đúng owner.
+        boolean isPublic = !Boolean.FALSE.equals(source.getIsPublic());
+        if (!isPublic && (currentUserId == null || source.getOwnerId() == null || !source.getOwnerId().equals(currentUserId))) {
+            throw new com.hust.exception.UnauthorizedException("ログインしていません。");
+        }
+
+        String preview = normalizePreview(source.getPreviewImageUrl(), source.getTheme());
+        String hash = source.getPreviewHash() != null ? source.getPreviewHash() : hashOf(preview);
+        // Template cũ vẫn dùng placeholder của theme: yêu cầu render thumbnail từ slide đầu (chạy nền, mỗi template 1 lần).
+        if (!Boolean.FALSE.equals(source.getPreviewGenerated()) && preview.equals(generatePreviewDataUrl(source.getTheme()))) {
+            eventPublisher.publishEvent(new TemplateThumbnailService.PlaceholderPreviewServed(templateId));
+        }
+
+        if (isExternalUrl(preview)) {
+            // Ảnh ngoài: danh sách đã trả nguyên URL (previewUrlOf), endpoint này không chuyển hướng tới đó.
+            throw new ResourceNotFoundException("テンプレートのプレビュー画像が存在しません。");
+        }
+        Image original = original(hash, preview);
+        Image image = width != null ? resized(hash, original, width) : original;
+        return new Preview(hash, image.contentType(), image.bytes(), isPublic);
+    }
+
+    private Image original(String hash, String preview) {
+        Image cached = cached(hash + ":0");
+        if (cached != null) {
+            return cached;
+        }
+        Image decoded = decodeDataUrl(preview);
+        cache(hash + ":0", decoded);
+        return decoded;
+    }
+
+    private Image resized(String hash, Image original, int requestedWidth) {
+        int width = VARIANT_WIDTHS[VARIANT_WIDTHS.length - 1];
+        for (int w : VARIANT_WIDTHS) {
+            if (w >= requestedWidth) {
+                width = w;
+                break;
+            }
+        }
+        String key = hash + ":" + width;
+        Image cached = cached(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        Image result = original;
+        // SVG (vector) không cần thu nhỏ; ảnh raster nhỏ hơn chiều rộng yêu cầu giữ nguyên.
+        if (!original.contentType().startsWith("image/svg")) {
+            try {
+                BufferedImage source = ImageIO.read(new ByteArrayInputStream(original.bytes()));
+                if (source != null && source.getWidth() > width) {
+                    int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+                    boolean jpeg = original.contentType().equals("image/jpeg");
+                    BufferedImage scaled = new BufferedImage(width, height, jpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+                    Graphics2D g = scaled.createGraphics();
+                    try {
+                        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                        g.drawImage(source, 0, 0, width, height, null);
+                    } finally {
+                        g.dispose();
+                    }
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    ImageIO.write(scaled, jpeg ? "jpeg" : "png", out);
+                    result = new Image(jpeg ? "image/jpeg" : "image/png", out.toByteArray());
+                }
+            } catch (Exception e) {
+                log.warn("Failed to resize template preview {}; serving the original", hash, e);
+            }
+        }
+        cache(key, result);
+        return result;
+    }
+
+    // data:[<mime>][;base64],<data>
+    private Image decodeDataUrl(String preview) {
+        int comma = preview.indexOf(',');
+        if (!preview.startsWith("data:") || comma < 0) {
+            throw new ResourceNotFoundException("テンプレートのプレビュー画像が存在しません。");
+        }
+        String meta = preview.substring(5, comma);
+        boolean base64 = meta.endsWith(";base64");
+        String contentType = (base64 ? meta.substring(0, meta.length() - 7) : meta).split(";")[0].trim().toLowerCase(Locale.ROOT);
+        if (!contentType.matches("image/[a-z0-9.+-]+")) {
+            throw new ResourceNotFoundException("テンプレートのプレビュー画像が存在しません。");
+        }
+        String data = preview.substring(comma + 1);
+        try {
+            byte[] bytes = base64
+                    ? Base64.getMimeDecoder().decode(data)
+                    : URLDecoder.decode(data, StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_8);
+            return new Image(contentType, bytes);
+        } catch (IllegalArgumentException e) {
+            throw new ResourceNotFoundException("テンプレートのプレビュー画像が存在しません。");
+        }
+    }
+
+    private synchronized Image cached(String key) {
+        return images.get(key);
+    }
+
+    private synchronized void cache(String key, Image image) {
+        if (image.bytes().length > MAX_CACHED_BYTES / 4) {
+            return;
+        }
+        Image previous = images.put(key, image);
+        if (previous != null) {
+            cachedBytes -= previous.bytes().length;
+        }
+        cachedBytes += image.bytes().length;
+        var it = images.entrySet().iterator();
+        while (cachedBytes > MAX_CACHED_BYTES && it.hasNext()) {
+            cachedBytes -= it.next().getValue().bytes().length;
+            it.remove();
+        }
+    }
+
+    // Tương thích ngược: chưa có preview hoặc preview SVG placeholder đời cũ
+    // (có chữ lớn dễ bị tràn) -> SVG placeholder mới, gọn. Ảnh do user gửi giữ nguyên.
+    public String normalizePreview(String preview, String theme) {
+        if (preview == null || preview.isBlank()) {
+            return generatePreviewDataUrl(theme);
+        }
+        String trimmed = preview.trim();
+        if (trimmed.startsWith(SVG_DATA_URL_PREFIX) && !trimmed.equals(generatePreviewDataUrl(theme))
+                && isLegacyGeneratedSvgPreview(trimmed)) {
+            return generatePreviewDataUrl(theme);
+        }
+        return trimmed;
+    }
+
+    /** preview là SVG placeholder của theme (không phải ảnh do user chọn / thumbnail đã render). */
+    public boolean isPlaceholder(String preview, String theme) {
+        return normalizePreview(preview, theme).equals(generatePreviewDataUrl(theme));
+    }
+
+    private boolean isLegacyGeneratedSvgPreview(String preview) {
+        if (preview == null) return false;
+        String prefix = SVG_DATA_URL_PREFIX;
+        if (!preview.startsWith(prefix)) return false;
+        try {
+            String encoded = preview.substring(prefix.length());
+            byte[] decoded = Base64.getDecoder().decode(encoded);
+            String svg = new String(decoded, StandardCharsets.UTF_8);
+            // Placeholder đời cũ thường chứa <text> và/hoặc label "Theme:".
+            return svg.contains("<text") || svg.contains("Theme:");
+        } catch (Exception ignored) {
+            return false;
+        }
+    }
+
+    private String generatePreviewDataUrl(String themeRaw) {
+        String theme = (themeRaw == null || themeRaw.isBlank()) ? "default" : themeRaw.trim().toLowerCase();
+
+        // Bảng màu đơn giản theo theme (SVG gradients)
+        String[] colors = switch (theme) {
+            case "business" -> new String[]{"#0F172A", "#334155"};
+            case "education" -> new String[]{"#14532D", "#22C55E"};
+            case "creative" -> new String[]{"#4C1D95", "#A855F7"};
+            case "green" -> new String[]{"#14532D", "#22C55E"};
+            case "purple" -> new String[]{"#4C1D95", "#A855F7"};
+            case "blue", "default" -> new String[]{"#1D4ED8", "#60A5FA"};
+            default -> new String[]{"#1D4ED8", "#60A5FA"};
+        };
+        // Key theo bảng màu (không theo tên theme tự do) => map chỉ có vài entry.
+        return generatedPreviews.computeIfAbsent(colors[0] + colors[1], k -> buildPreviewDataUrl(colors));
+    }
+
+    private String buildPreviewDataUrl(String[] colors) {
+        // Thumbnail không có chữ để phần overlay tên template trong UI dễ đọc.
+        // 800x450 cho tỉ lệ đẹp hơn trên nhiều kích thước card.
+        String svg = """
+            <svg xmlns=\"http://www.w3.org/2000/svg\" width=\"800\" height=\"450\" viewBox=\"0 0 800 450\">
+              <defs>
+                <linearGradient id=\"g\" x1=\"0\" y1=\"0\" x2=\"1\" y2=\"1\">
+                                    <stop offset=\"0%%\" stop-color=\"%s\"/>
+                                    <stop offset=\"100%%\" stop-color=\"%s\"/>
+                </linearGradient>
+                <linearGradient id=\"shine\" x1=\"0\" y1=\"0\" x2=\"1\" y2=\"0\">
+                                    <stop offset=\"0%%\" stop-color=\"rgba(255,255,255,0.00)\"/>
+                                    <stop offset=\"50%%\" stop-color=\"rgba(255,255,255,0.18)\"/>
+                                    <stop offset=\"100%%\" stop-color=\"rgba(255,255,255,0.00)\"/>
+                </linearGradient>
+              </defs>
+              <rect width=\"800\" height=\"450\" fill=\"url(#g)\"/>
+              <rect x=\"-120\" y=\"40\" width=\"380\" height=\"520\" transform=\"rotate(-12 0 0)\" fill=\"rgba(255,255,255,0.10)\"/>
+              <rect x=\"520\" y=\"-120\" width=\"420\" height=\"560\" transform=\"rotate(18 800 0)\" fill=\"rgba(255,255,255,0.08)\"/>
+              <rect x=\"0\" y=\"0\" width=\"800\" height=\"450\" fill=\"url(#shine)\"/>
+              <rect x=\"40\" y=\"60\" width=\"720\" height=\"330\" rx=\"24\" fill=\"rgba(0,0,0,0.10)\"/>
+              <rect x=\"58\" y=\"84\" width=\"420\" height=\"64\" rx=\"14\" fill=\"rgba(255,255,255,0.16)\"/>
+              <rect x=\"58\" y=\"164\" width=\"580\" height=\"30\" rx=\"10\" fill=\"rgba(255,255,255,0.14)\"/>
+              <rect x=\"58\" y=\"206\" width=\"540\" height=\"30\" rx=\"10\" fill=\"rgba(255,255,255,0.12)\"/>
+              <rect x=\"58\" y=\"248\" width=\"500\" height=\"30\" rx=\"10\" fill=\"rgba(255,255,255,0.10)\"/>
+              <rect x=\"58\" y=\"304\" width=\"260\" height=\"60\" rx=\"14\" fill=\"rgba(255,255,255,0.10)\"/>
+              <rect x=\"340\" y=\"304\" width=\"220\" height=\"60\" rx=\"14\" fill=\"rgba(255,255,255,0.08)\"/>
+            </svg>
+            """.formatted(colors[0], colors[1]);
+
+        String base64 = Base64.getEncoder().encodeToString(svg.getBytes(StandardCharsets.UTF_8));
+        return SVG_DATA_URL_PREFIX + base64;
+    }
+}
@@ -1,6 +1,9 @@
 package com.hust.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hust.dto.request.TemplateCreateRequest;
+import com.hust.dto.response.TemplatePageResponse;
 import com.hust.dto.response.TemplateResponse;
 import com.hust.entity.Template;
 import com.hust.entity.TemplateSlide;
@@ -12,12 +15,17 @@ import com.hust.repository.TemplateSlideRepository;
 import com.hust.repository.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Instant;
 import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.Base64;
+import java.util.Locale;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -30,6 +38,12 @@ public class TemplateService {
     @Autowired private TemplateSlideRepository templateSlideRepository;
     @Autowired private SlideRepository slideRepository;
     @Autowired private UserRepository userRepository;
+    @Autowired private TemplateLayoutCache templateLayoutCache;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private TemplateLibraryCache templateLibraryCache;
+    @Autowired private TemplatePreviewService templatePreviewService;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+    @Autowired private NamedParameterJdbcTemplate jdbcTemplate;
     // @Autowired private HistoryLogService historyLogService; // Giả định HistoryLogService
 
     // --- 1. Xem Thư viện (No. 4) ---
@@ -42,11 +56,9 @@ public class TemplateService {
                 throw new com.hust.exception.UnauthorizedException("ログインしていません。");
             }
             templates = templateRepository.findMineTemplatesOrderByRecency(currentUserId);
-        } else if ("public".equalsIgnoreCase(type)) {
-            templates = templateRepository.findPublicTemplatesOrderByRecency();
         } else {
-            // Trường hợp lỗi/mặc định, trả về public
-            templates = templateRepository.findPublicTemplatesOrderByRecency();
+            // "public" và trường hợp lỗi/mặc định: thư viện public (dùng chung cache)
+            return getPublicLibrary().templates();
         }
 
         // Map Entity sang Response DTO và kiểm tra quyền sở hữu
@@ -55,6 +67,129 @@ public class TemplateService {
                 .collect(Collectors.toList());
     }
 
+    // --- 1b. Thư viện public: giống nhau với mọi người xem (isOwner luôn false) => cache đến khi template đổi ---
+    @Transactional(readOnly = true)
+    public TemplateLibraryCache.PublicLibrary getPublicLibrary() {
+        return templateLibraryCache.get(() -> templateRepository.findPublicTemplatesOrderByRecency().stream()
+                .map(t -> toTemplateResponse(t, null))
+                .collect(Collectors.toList()));
+    }
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // --- 1c. Thư viện phân trang + tìm kiếm (GET /api/templates/page) ---
+    // Keyset pagination theo (coalesce(edited_at, created_at), id) giảm dần; owner lấy cùng query (JOIN users),
+    // không tải preview_image_url (trừ dữ liệu cũ chưa có preview_hash và ảnh ngoài http/https). Index: xem sql.txt mục 19.
+    @Transactional(readOnly = true)
+    public TemplatePageResponse listTemplates(String type, String query, String theme, String cursor, int limit,
+                                              Long currentUserId) {
+        boolean mine = "mine".equalsIgnoreCase(type);
+        if (mine && currentUserId == null) {
+            throw new com.hust.exception.UnauthorizedException("ログインしていません。");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        StringBuilder sql = new StringBuilder(
+                "SELECT t.id, t.name, t.description, t.theme, t.is_public, t.created_at, t.edited_at, t.preview_hash, "
+                + "CASE WHEN t.preview_hash IS NULL OR left(t.preview_image_url, 8) ~ '^https?://' "
+                + "THEN t.preview_image_url END AS legacy_preview, "
+                + "o.id AS owner_id, o.username AS owner_username, COALESCE(t.edited_at, t.created_at) AS sort_at "
+                + "FROM templates t JOIN users o ON o.id = t.owner_id ");
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        if (mine) {
+            sql.append("WHERE t.owner_id = :ownerId AND t.is_deleted = false ");
+            params.addValue("ownerId", currentUserId);
+        } else {
+            sql.append("WHERE t.is_public = true ");
+        }
+        if (theme != null && !theme.isBlank()) {
+            sql.append("AND t.theme = :theme ");
+            params.addValue("theme", theme.trim());
+        }
+        if (query != null && !query.isBlank()) {
+            // Tìm chuỗi con (không phân biệt hoa thường) trong tên / mô tả: dùng index trigram (pg_trgm).
+            sql.append("AND (lower(t.name) LIKE :pattern OR lower(t.description) LIKE :pattern) ");
+            params.addValue("pattern", "%" + escapeLike(query.trim().toLowerCase(Locale.ROOT)) + "%");
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            PageCursor after = decodeCursor(cursor);
+            sql.append("AND (COALESCE(t.edited_at, t.created_at), t.id) < (:sortAt, :id) ");
+            params.addValue("sortAt", Timestamp.from(after.sortAt()));
+            params.addValue("id", after.id());
+        }
+        // Lấy dư 1 dòng để biết còn trang sau hay không (không cần COUNT).
+        sql.append("ORDER BY sort_at DESC, t.id DESC LIMIT :limit");
+        params.addValue("limit", pageSize + 1);
+
+        List<TemplateResponse> rows = new ArrayList<>(pageSize + 1);
+        List<Instant> sortKeys = new ArrayList<>(pageSize + 1);
+        jdbcTemplate.query(sql.toString(), params, rs -> {
+            Long id = rs.getLong("id");
+            String rowTheme = rs.getString("theme");
+            String previewHash = rs.getString("preview_hash");
+            String storedPreview = rs.getString("legacy_preview");
+            if (previewHash == null) {
+                previewHash = TemplatePreviewService.hashOf(
+                        templatePreviewService.normalizePreview(storedPreview, rowTheme));
+            }
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            Timestamp editedAt = rs.getTimestamp("edited_at");
+            Timestamp sortAt = rs.getTimestamp("sort_at");
+            long ownerId = rs.getLong("owner_id");
+            String ownerUsername = rs.getString("owner_username");
+            rows.add(TemplateResponse.builder()
+                    .id(id)
+                    .name(rs.getString("name"))
+                    .description(rs.getString("description"))
+                    .theme(rowTheme)
+                    .ownerUsername(ownerUsername != null ? ownerUsername : "不明")
+                    .previewImageUrl(templatePreviewService.previewUrlOf(id, previewHash, storedPreview))
+                    .isPublic(rs.getBoolean("is_public"))
+                    .isOwner(currentUserId != null && currentUserId == ownerId)
+                    .createdAt(createdAt != null ? createdAt.toInstant() : null)
+                    .editedAt(editedAt != null ? editedAt.toInstant() : (createdAt != null ? createdAt.toInstant() : null))
+                    .build());
+            sortKeys.add(sortAt != null ? sortAt.toInstant() : null);
+        });
+
+        boolean hasMore = rows.size() > pageSize;
+        List<TemplateResponse> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore && sortKeys.get(pageSize - 1) != null) {
+            nextCursor = encodeCursor(sortKeys.get(pageSize - 1), page.get(pageSize - 1).getId());
+        }
+
+        return TemplatePageResponse.builder()
+                .items(new ArrayList<>(page))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore && nextCursor != null)
+                .build();
+    }
+
+    private record PageCursor(Instant sortAt, Long id) {
+    }
+
+    // Cursor = base64url("<sortAt ISO-8601>|<id>"), client chỉ cần gửi lại nguyên văn.
+    private String encodeCursor(Instant sortAt, Long id) {
+        String raw = sortAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private PageCursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            return new PageCursor(Instant.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("カーソルが無効です。");
+        }
+    }
+
+    // Ký tự đặc biệt của LIKE (escape mặc định của PostgreSQL là '\').
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     // --- 2. Tạo Template Mới (No. 5) ---
     @Transactional
     public TemplateResponse createNewTemplate(TemplateCreateRequest request, Long currentUserId) {
@@ -71,23 +206,31 @@ public class TemplateService {
         template.setEditedAt(now);
         template.setIsPublic(true); 
         template.setIsDeleted(false);
-        if (request.getPreviewImageUrl() != null && !request.getPreviewImageUrl().isBlank()) {
-            template.setPreviewImageUrl(request.getPreviewImageUrl().trim());
-        } else {
-            template.setPreviewImageUrl(generatePreviewDataUrl(template.getTheme(), template.getName()));
-        }
+        // URL preview của template khác không phải là ảnh => dùng placeholder.
+        String preview = templatePreviewService.isPreviewUrl(request.getPreviewImageUrl()) ? null : request.getPreviewImageUrl();
+        setPreview(template, preview);
+        // Không chọn ảnh => placeholder ngay, thumbnail render từ slide đầu được tạo nền sau commit.
+        template.setPreviewGenerated(preview == null || preview.isBlank());
         
         Template savedTemplate = templateRepository.save(template);
+        templateLibraryCache.invalidate();
         
-        // Lưu các Slide mẫu (layoutJson)
+        // Lưu các Slide mẫu (layoutJson) trong 1 lần saveAll (JDBC batch)
         if (request.getSlides() != null && !request.getSlides().isEmpty()) {
-            request.getSlides().forEach(slideReq -> {
-                TemplateSlide slide = new TemplateSlide();
-                slide.setTemplate(savedTemplate);
-                slide.setLayoutJson(slideReq.getLayoutJson());
-                slide.setSlideOrder(slideReq.getOrder() != null ? slideReq.getOrder() : 0);
-                templateSlideRepository.save(slide);
-            });
+            List<TemplateSlide> slides = request.getSlides().stream()
+                    .map(slideReq -> {
+                        TemplateSlide slide = new TemplateSlide();
+                        slide.setTemplate(savedTemplate);
+                        slide.setLayoutJson(layoutJsonOf(slideReq));
+                        slide.setSlideOrder(slideReq.getOrder() != null ? slideReq.getOrder() : 0);
+                        slide.setCreatedAt(now);
+                        return slide;
+                    })
+                    .collect(Collectors.toList());
+            templateSlideRepository.saveAll(slides);
+        }
+        if (Boolean.TRUE.equals(savedTemplate.getPreviewGenerated())) {
+            eventPublisher.publishEvent(new TemplateThumbnailService.TemplateDeckChanged(savedTemplate.getId()));
         }
         
         // historyLogService.logAction("CREATE_TEMPLATE", "TEMPLATE", savedTemplate.getId(), currentUserId);
@@ -126,17 +269,27 @@ public class TemplateService {
             throw new SecurityException("このテンプレートを編集する権限がありません。");
         }
 
+        // Client gửi lại URL preview đã nhận (/templates/{id}/preview?v=...) => giữ nguyên ảnh đang lưu,
+        // trừ placeholder của theme (theme có thể vừa đổi). Preview do hệ thống tạo được render lại từ deck mới.
+        boolean keepStored = templatePreviewService.isPreviewUrl(request.getPreviewImageUrl());
+        boolean generated = keepStored
+                ? isGeneratedPreview(template)
+                : request.getPreviewImageUrl() == null || request.getPreviewImageUrl().isBlank();
+        String preview = request.getPreviewImageUrl();
+        if (keepStored) {
+            boolean placeholder = templatePreviewService.isPlaceholder(template.getPreviewImageUrl(), template.getTheme());
+            preview = generated && placeholder ? null : template.getPreviewImageUrl();
+        }
+
         template.setName(request.getName());
         template.setDescription(request.getDescription());
         template.setTheme(request.getTheme() == null || request.getTheme().isBlank() ? "default" : request.getTheme().trim());
         template.setEditedAt(Instant.now());
-        if (request.getPreviewImageUrl() != null && !request.getPreviewImageUrl().isBlank()) {
-            template.setPreviewImageUrl(request.getPreviewImageUrl().trim());
-        } else {
-            template.setPreviewImageUrl(generatePreviewDataUrl(template.getTheme(), template.getName()));
-        }
+        setPreview(template, preview);
+        template.setPreviewGenerated(generated);
 
         Template savedTemplate = templateRepository.save(template);
+        templateLibraryCache.invalidate();
 
         // Update slides in-place to avoid deleting referenced TemplateSlide rows.
         // Request DTO doesn't carry slide IDs, so we reconcile by index (order in request).
@@ -148,23 +301,32 @@ public class TemplateService {
         int existingCount = (existingSlides != null) ? existingSlides.size() : 0;
 
         // 1) Update existing slides by index.
+        List<TemplateSlide> toSave = new ArrayList<>(incomingCount);
         int updateCount = Math.min(existingCount, incomingCount);
         for (int i = 0; i < updateCount; i++) {
             TemplateSlide slide = existingSlides.get(i);
             TemplateCreateRequest.TemplateSlideRequest slideReq = incomingSlides.get(i);
-            slide.setLayoutJson(slideReq.getLayoutJson());
+            slide.setLayoutJson(layoutJsonOf(slideReq));
             slide.setSlideOrder(slideReq.getOrder() != null ? slideReq.getOrder() : i);
-            templateSlideRepository.save(slide);
+            toSave.add(slide);
         }
 
         // 2) Append any new slides.
+        Instant now = Instant.now();
         for (int i = updateCount; i < incomingCount; i++) {
             TemplateCreateRequest.TemplateSlideRequest slideReq = incomingSlides.get(i);
             TemplateSlide slide = new TemplateSlide();
             slide.setTemplate(savedTemplate);
-            slide.setLayoutJson(slideReq.getLayoutJson());
+            slide.setLayoutJson(layoutJsonOf(slideReq));
             slide.setSlideOrder(slideReq.getOrder() != null ? slideReq.getOrder() : i);
-            templateSlideRepository.save(slide);
+            slide.setCreatedAt(now);
+            toSave.add(slide);
+        }
+        templateSlideRepository.saveAll(toSave);
+
+        // Layout đã compile của các slide cũ không còn đúng nữa.
+        if (existingSlides != null) {
+            templateLayoutCache.evict(existingSlides.stream().map(TemplateSlide::getId).toList());
         }
 
         // 3) Remove trailing slides if template deck shrank.
@@ -189,8 +351,20 @@ public class TemplateService {
             }
         }
 
+        if (generated) {
+            eventPublisher.publishEvent(new TemplateThumbnailService.TemplateDeckChanged(templateId));
+        }
+
         return toTemplateResponse(savedTemplate, currentUserId);
     }
+
+    // Dữ liệu cũ chưa có cờ preview_generated: coi là do hệ thống tạo nếu đang là placeholder của theme.
+    private boolean isGeneratedPreview(Template template) {
+        if (template.getPreviewGenerated() != null) {
+            return template.getPreviewGenerated();
+        }
+        return templatePreviewService.isPlaceholder(template.getPreviewImageUrl(), template.getTheme());
+    }
     
     // --- 3. Xóa Mềm Template (No. 4) ---
     @Transactional
@@ -206,11 +380,28 @@ public class TemplateService {
         
         template.setIsDeleted(true); 
         templateRepository.save(template);
+        templateLibraryCache.invalidate();
 
         // historyLogService.logAction("SOFT_DELETE_TEMPLATE", "TEMPLATE", templateId, currentUserId);
         log.info("Template {} soft deleted by User {}", templateId, currentUserId);
     }
 
+    // --- Weak ETag cho GET /api/templates/{id}/slides: theo editedAt (updateTemplate luôn cập nhật) ---
+    @Transactional(readOnly = true)
+    public String getTemplateSlidesETag(Long templateId, Long currentUserId) {
+        TemplateRepository.TemplateStamp stamp = templateRepository.findStampById(templateId)
+            .orElseThrow(() -> new ResourceNotFoundException("テンプレートが存在しません。"));
+
+        // Cùng quy tắc với getTemplateSlides: template private yêu cầu đúng owner.
+        if (Boolean.FALSE.equals(stamp.getIsPublic())
+                && (currentUserId == null || stamp.getOwnerId() == null || !stamp.getOwnerId().equals(currentUserId))) {
+            throw new com.hust.exception.UnauthorizedException("ログインしていません。");
+        }
+
+        Instant edited = stamp.getEditedAt() != null ? stamp.getEditedAt() : stamp.getCreatedAt();
+        return "W/\"t-" + templateId + "-" + (edited != null ? edited.toEpochMilli() : 0L) + "\"";
+    }
+
     // --- 4. Lấy danh sách slide của template (để chọn layout) ---
     @Transactional(readOnly = true)
     public List<com.hust.dto.response.TemplateSlideResponse> getTemplateSlides(Long templateId, Long currentUserId) {
@@ -243,12 +434,12 @@ public class TemplateService {
             && t.getOwner().getId() != null
             && t.getOwner().getId().equals(currentUserId);
 
-    String preview = t.getPreviewImageUrl();
-    // Tương thích ngược: template cũ chưa có preview hoặc preview SVG placeholder đời cũ
-    // (có chữ lớn dễ bị tràn) -> luôn trả về SVG placeholder mới, gọn.
-    if (preview == null || preview.isBlank() || isLegacyGeneratedSvgPreview(preview)) {
-        preview = generatePreviewDataUrl(t.getTheme(), t.getName());
-    }
+    // Ảnh được phục vụ riêng qua GET /api/templates/{id}/preview; danh sách chỉ mang URL có hash (ảnh ngoài: URL gốc).
+    // Dữ liệu cũ chưa có previewHash: tính từ preview đã chuẩn hóa (giống endpoint preview).
+    String previewHash = t.getPreviewHash() != null
+        ? t.getPreviewHash()
+        : TemplatePreviewService.hashOf(templatePreviewService.normalizePreview(t.getPreviewImageUrl(), t.getTheme()));
+    String preview = templatePreviewService.previewUrlOf(t.getId(), previewHash, t.getPreviewImageUrl());
 
         String ownerUsername = (t.getOwner() != null && t.getOwner().getUsername() != null)
             ? t.getOwner().getUsername()
@@ -268,66 +459,11 @@ public class TemplateService {
                 .build();
     }
 
-    private boolean isLegacyGeneratedSvgPreview(String preview) {
-        if (preview == null) return false;
-        String prefix = "data:image/svg+xml;base64,";
-        if (!preview.startsWith(prefix)) return false;
-        try {
-            String encoded = preview.substring(prefix.length());
-            byte[] decoded = Base64.getDecoder().decode(encoded);
-            String svg = new String(decoded, StandardCharsets.UTF_8);
-            // Placeholder đời cũ thường chứa <text> và/hoặc label "Theme:".
-            return svg.contains("<text") || svg.contains("Theme:");
-        } catch (Exception ignored) {
-            return false;
-        }
-    }
-
-    private String generatePreviewDataUrl(String themeRaw, String titleRaw) {
-        String theme = (themeRaw == null || themeRaw.isBlank()) ? "default" : themeRaw.trim().toLowerCase();
-
-        // Bảng màu đơn giản theo theme (SVG gradients)
-        String[] colors = switch (theme) {
-            case "business" -> new String[]{"#0F172A", "#334155"};
-            case "education" -> new String[]{"#14532D", "#22C55E"};
-            case "creative" -> new String[]{"#4C1D95", "#A855F7"};
-            case "green" -> new String[]{"#14532D", "#22C55E"};
-            case "purple" -> new String[]{"#4C1D95", "#A855F7"};
-            case "blue", "default" -> new String[]{"#1D4ED8", "#60A5FA"};
-            default -> new String[]{"#1D4ED8", "#60A5FA"};
-        };
-
-        // Thumbnail không có chữ để phần overlay tên template trong UI dễ đọc.
-        // 800x450 cho tỉ lệ đẹp hơn trên nhiều kích thước card.
-        String svg = """
-            <svg xmlns=\"http://www.w3.org/2000/svg\" width=\"800\" height=\"450\" viewBox=\"0 0 800 450\">
-              <defs>
-                <linearGradient id=\"g\" x1=\"0\" y1=\"0\" x2=\"1\" y2=\"1\">
-                                    <stop offset=\"0%%\" stop-color=\"%s\"/>
-                                    <stop offset=\"100%%\" stop-color=\"%s\"/>
-                </linearGradient>
-                <linearGradient id=\"shine\" x1=\"0\" y1=\"0\" x2=\"1\" y2=\"0\">
-                                    <stop offset=\"0%%\" stop-color=\"rgba(255,255,255,0.00)\"/>
-                                    <stop offset=\"50%%\" stop-color=\"rgba(255,255,255,0.18)\"/>
-                                    <stop offset=\"100%%\" stop-color=\"rgba(255,255,255,0.00)\"/>
-                </linearGradient>
-              </defs>
-              <rect width=\"800\" height=\"450\" fill=\"url(#g)\"/>
-              <rect x=\"-120\" y=\"40\" width=\"380\" height=\"520\" transform=\"rotate(-12 0 0)\" fill=\"rgba(255,255,255,0.10)\"/>
-              <rect x=\"520\" y=\"-120\" width=\"420\" height=\"560\" transform=\"rotate(18 800 0)\" fill=\"rgba(255,255,255,0.08)\"/>
-              <rect x=\"0\" y=\"0\" width=\"800\" height=\"450\" fill=\"url(#shine)\"/>
-              <rect x=\"40\" y=\"60\" width=\"720\" height=\"330\" rx=\"24\" fill=\"rgba(0,0,0,0.10)\"/>
-              <rect x=\"58\" y=\"84\" width=\"420\" height=\"64\" rx=\"14\" fill=\"rgba(255,255,255,0.16)\"/>
-              <rect x=\"58\" y=\"164\" width=\"580\" height=\"30\" rx=\"10\" fill=\"rgba(255,255,255,0.14)\"/>
-              <rect x=\"58\" y=\"206\" width=\"540\" height=\"30\" rx=\"10\" fill=\"rgba(255,255,255,0.12)\"/>
-              <rect x=\"58\" y=\"248\" width=\"500\" height=\"30\" rx=\"10\" fill=\"rgba(255,255,255,0.10)\"/>
-              <rect x=\"58\" y=\"304\" width=\"260\" height=\"60\" rx=\"14\" fill=\"rgba(255,255,255,0.10)\"/>
-              <rect x=\"340\" y=\"304\" width=\"220\" height=\"60\" rx=\"14\" fill=\"rgba(255,255,255,0.08)\"/>
-            </svg>
-            """.formatted(colors[0], colors[1]);
-
-        String base64 = Base64.getEncoder().encodeToString(svg.getBytes(StandardCharsets.UTF_8));
-        return "data:image/svg+xml;base64," + base64;
+    // Chuẩn hóa preview 1 lần lúc ghi và lưu hash kèm theo.
+    private void setPreview(Template template, String preview) {
+        String normalized = templatePreviewService.normalizePreview(preview, template.getTheme());
+        template.setPreviewImageUrl(normalized);
+        template.setPreviewHash(TemplatePreviewService.hashOf(normalized));
     }
 
     private String escapeXml(String s) {
@@ -338,4 +474,22 @@ public class TemplateService {
             .replace("\"", "&quot;")
             .replace("'", "&apos;");
     }
-}
\ No newline at end of file
+
+    // layout_json là jsonb và được nhúng nguyên văn vào content_json của slide => phải là JSON object hợp lệ.
+    private String layoutJsonOf(TemplateCreateRequest.TemplateSlideRequest slideReq) {
+        String layoutJson = slideReq.getLayoutJson();
+        if (layoutJson == null || layoutJson.isBlank()) {
+            return null;
+        }
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(layoutJson);
+        } catch (Exception e) {
+            node = null;
+        }
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("テンプレートのレイアウトが正しいJSON形式ではありません。");
+        }
+        return layoutJson;
+    }
+}
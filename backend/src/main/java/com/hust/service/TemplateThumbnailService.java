@@ -0,0 +1,134 @@
+package com.hust.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.hust.entity.TemplateSlide;
+import com.hust.repository.TemplateRepository;
+import com.hust.repository.TemplateSlideRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thumbnail raster của template: render slide đầu tiên (TemplateSlide.layoutJson) bằng renderer của slide
+ * ({@link SlideService#renderSlidePng}) thay cho SVG gradient chung của theme.
+ * - Chỉ áp dụng cho template không có ảnh preview do user chọn (templates.preview_generated).
+ * - Chạy nền sau khi tạo / cập nhật template (sau commit); kết quả lưu như 1 preview bình thường
+ *   (data URL PNG + preview_hash) nên được phục vụ và cache qua GET /api/templates/{id}/preview.
+ */
+@Service
+@Slf4j
+public class TemplateThumbnailService {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final String FONT_FAMILY = "Noto Sans JP";
+
+    private static final int MAX_TRACKED_ATTEMPTS = 10000;
+
+    /** Phát ra khi deck của template có thể đã đổi (TemplateService.createNewTemplate / updateTemplate). */
+    public record TemplateDeckChanged(Long templateId) {
+    }
+
+    /** Phát ra khi preview được phục vụ vẫn là placeholder của theme (TemplatePreviewService, template cũ). */
+    public record PlaceholderPreviewServed(Long templateId) {
+    }
+
+    // Template đang chờ render: nhiều yêu cầu liên tiếp chỉ render 1 lần.
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    // Template đã thử render từ placeholder (kể cả khi không render được, vd. chưa có slide):
+    // không xếp hàng lại mỗi lần GET preview, chỉ thử lại khi deck đổi (hoặc khởi động lại).
+    private final Set<Long> attempted = ConcurrentHashMap.newKeySet();
+
+    @Autowired private TemplateRepository templateRepository;
+    @Autowired private TemplateSlideRepository templateSlideRepository;
+    @Autowired private SlideService slideService;
+    @Autowired private TemplateLibraryCache templateLibraryCache;
+    @Autowired private TemplatePreviewService templatePreviewService;
+    @Autowired private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("thumbnailRenderExecutor")
+    private ThreadPoolTaskExecutor thumbnailRenderExecutor;
+
+    // AFTER_COMMIT: render phải đọc được deck vừa lưu.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTemplateDeckChanged(TemplateDeckChanged event) {
+        attempted.remove(event.templateId());
+        requestRender(event.templateId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPlaceholderPreviewServed(PlaceholderPreviewServed event) {
+        if (attempted.size() >= MAX_TRACKED_ATTEMPTS) {
+            attempted.clear();
+        }
+        if (attempted.add(event.templateId())) {
+            requestRender(event.templateId());
+        }
+    }
+
+    /** Đưa template vào hàng đợi render (bỏ qua nếu đã đang chờ). */
+    public void requestRender(Long templateId) {
+        if (!queued.add(templateId)) {
+            return;
+        }
+        try {
+            thumbnailRenderExecutor.execute(() -> {
+                queued.remove(templateId);
+                try {
+                    render(templateId);
+                } catch (Exception e) {
+                    log.warn("Thumbnail: failed to render template {}", templateId, e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            queued.remove(templateId);
+            log.warn("Thumbnail: render queue is full, template {} keeps its current preview", templateId);
+        }
+    }
+
+    private void render(Long templateId) throws Exception {
+        TemplateRepository.TemplateRenderSource source = templateRepository.findRenderSourceById(templateId).orElse(null);
+        if (source == null || Boolean.FALSE.equals(source.getPreviewGenerated())) {
+            return;
+        }
+        // Dữ liệu cũ (preview_generated NULL): chỉ thay khi preview hiện tại là placeholder của theme.
+        if (source.getPreviewGenerated() == null
+                && !templatePreviewService.isPlaceholder(source.getPreviewImageUrl(), source.getTheme())) {
+            return;
+        }
+        List<TemplateSlide> slides = templateSlideRepository.findByTemplateIdOrderBySlideOrderAsc(templateId);
+        if (slides.isEmpty() || slides.get(0).getLayoutJson() == null) {
+            return; // Chưa có slide: giữ placeholder của theme.
+        }
+
+        // Cùng dạng content_json của slide tạo từ template: {"layout": ..., "data": {...}}.
+        ObjectNode content = objectMapper.createObjectNode();
+        content.set("layout", objectMapper.readTree(slides.get(0).getLayoutJson()));
+        content.putObject("data").put("title", source.getName()).put("content", "");
+
+        byte[] png = slideService.renderSlidePng(source.getName(), content.toString(), FONT_FAMILY, WIDTH, HEIGHT);
+        String preview = "data:image/png;base64," + Base64.getEncoder().encodeToString(png);
+        String hash = TemplatePreviewService.hashOf(preview);
+        if (hash.equals(source.getPreviewHash())) {
+            return;
+        }
+
+        // Chỉ ghi nếu preview / editedAt chưa đổi kể từ lúc đọc (bản render cũ xong muộn không ghi đè bản mới).
+        int updated = templateRepository.updateGeneratedPreview(templateId, preview, hash,
+                source.getPreviewHash(), source.getEditedAt());
+        if (updated > 0) {
+            templateLibraryCache.invalidate();
+        }
+    }
+}
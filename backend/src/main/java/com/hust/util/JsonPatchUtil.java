@@ -0,0 +1,190 @@
+package com.hust.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Áp dụng JSON Patch (RFC 6902) và JSON Merge Patch (RFC 7386) lên document đã parse.
+ * Không sửa document gốc: luôn làm trên bản sao và trả về kết quả.
+ * Patch không hợp lệ / không áp dụng được (kể cả op "test" sai) => {@link IllegalArgumentException}.
+ */
+public final class JsonPatchUtil {
+
+    public static final String JSON_PATCH = "application/json-patch+json";
+    public static final String MERGE_PATCH = "application/merge-patch+json";
+
+    private JsonPatchUtil() {
+    }
+
+    // --- RFC 6902 ---
+    public static JsonNode applyJsonPatch(JsonNode document, JsonNode patch) {
+        if (patch == null || !patch.isArray()) {
+            throw new IllegalArgumentException("JSON Patch は配列で指定してください。");
+        }
+        JsonNode result = document == null ? null : document.deepCopy();
+        for (JsonNode op : patch) {
+            result = applyOperation(result, op);
+        }
+        return result;
+    }
+
+    // --- RFC 7386 ---
+    public static JsonNode applyMergePatch(JsonNode target, JsonNode patch) {
+        if (patch == null || !patch.isObject()) {
+            return patch == null ? null : patch.deepCopy();
+        }
+        ObjectNode result = target != null && target.isObject()
+                ? ((ObjectNode) target).deepCopy()
+                : ((ObjectNode) patch).objectNode();
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (field.getValue().isNull()) {
+                result.remove(field.getKey());
+            } else {
+                result.set(field.getKey(), applyMergePatch(result.get(field.getKey()), field.getValue()));
+            }
+        }
+        return result;
+    }
+
+    private static JsonNode applyOperation(JsonNode document, JsonNode op) {
+        String name = requiredText(op, "op");
+        List<String> path = parsePointer(requiredText(op, "path"));
+        return switch (name) {
+            case "add" -> add(document, path, requiredValue(op));
+            case "remove" -> remove(document, path);
+            case "replace" -> add(remove(document, path), path, requiredValue(op));
+            case "move" -> {
+                List<String> from = parsePointer(requiredText(op, "from"));
+                if (isPrefix(from, path) && from.size() < path.size()) {
+                    throw new IllegalArgumentException("JSON Patch: 子要素へは移動できません: " + op.get("path").asText());
+                }
+                JsonNode value = get(document, from);
+                yield add(remove(document, from), path, value);
+            }
+            case "copy" -> add(document, path, get(document, parsePointer(requiredText(op, "from"))).deepCopy());
+            case "test" -> {
+                if (!get(document, path).equals(requiredValue(op))) {
+                    throw new IllegalArgumentException("JSON Patch: test 操作が一致しません: " + op.get("path").asText());
+                }
+                yield document;
+            }
+            default -> throw new IllegalArgumentException("JSON Patch: 未対応の操作です: " + name);
+        };
+    }
+
+    private static JsonNode add(JsonNode document, List<String> path, JsonNode value) {
+        if (path.isEmpty()) {
+            return value.deepCopy();
+        }
+        JsonNode parent = get(document, path.subList(0, path.size() - 1));
+        String last = path.get(path.size() - 1);
+        if (parent instanceof ObjectNode object) {
+            object.set(last, value.deepCopy());
+        } else if (parent instanceof ArrayNode array) {
+            if ("-".equals(last)) {
+                array.add(value.deepCopy());
+            } else {
+                int index = arrayIndex(last, array.size());
+                array.insert(index, value.deepCopy());
+            }
+        } else {
+            throw new IllegalArgumentException("JSON Patch: パスが存在しません: " + toPointer(path));
+        }
+        return document;
+    }
+
+    private static JsonNode remove(JsonNode document, List<String> path) {
+        if (path.isEmpty()) {
+            return null;
+        }
+        JsonNode parent = get(document, path.subList(0, path.size() - 1));
+        String last = path.get(path.size() - 1);
+        if (parent instanceof ObjectNode object && object.has(last)) {
+            object.remove(last);
+        } else if (parent instanceof ArrayNode array) {
+            array.remove(arrayIndex(last, array.size() - 1));
+        } else {
+            throw new IllegalArgumentException("JSON Patch: パスが存在しません: " + toPointer(path));
+        }
+        return document;
+    }
+
+    private static JsonNode get(JsonNode document, List<String> path) {
+        JsonNode current = document;
+        for (String token : path) {
+            if (current instanceof ObjectNode object && object.has(token)) {
+                current = object.get(token);
+            } else if (current instanceof ArrayNode array) {
+                current = array.get(arrayIndex(token, array.size() - 1));
+            } else {
+                throw new IllegalArgumentException("JSON Patch: パスが存在しません: " + toPointer(path));
+            }
+        }
+        if (current == null) {
+            throw new IllegalArgumentException("JSON Patch: パスが存在しません: " + toPointer(path));
+        }
+        return current;
+    }
+
+    // Chỉ số mảng: số nguyên không âm, không có số 0 ở đầu, tối đa maxIndex.
+    private static int arrayIndex(String token, int maxIndex) {
+        if (!token.matches("0|[1-9][0-9]{0,8}")) {
+            throw new IllegalArgumentException("JSON Patch: 配列のインデックスが不正です: " + token);
+        }
+        int index = Integer.parseInt(token);
+        if (index > maxIndex) {
+            throw new IllegalArgumentException("JSON Patch: 配列のインデックスが範囲外です: " + token);
+        }
+        return index;
+    }
+
+    // JSON Pointer (RFC 6901): "" = root, "/a/b~1c" => [a, b/c]
+    private static List<String> parsePointer(String pointer) {
+        if (pointer.isEmpty()) {
+            return List.of();
+        }
+        if (!pointer.startsWith("/")) {
+            throw new IllegalArgumentException("JSON Patch: パスが不正です: " + pointer);
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String raw : pointer.substring(1).split("/", -1)) {
+            tokens.add(raw.replace("~1", "/").replace("~0", "~"));
+        }
+        return tokens;
+    }
+
+    private static String toPointer(List<String> path) {
+        StringBuilder sb = new StringBuilder();
+        for (String token : path) {
+            sb.append('/').append(token.replace("~", "~0").replace("/", "~1"));
+        }
+        return sb.toString();
+    }
+
+    private static boolean isPrefix(List<String> prefix, List<String> path) {
+        return prefix.size() <= path.size() && path.subList(0, prefix.size()).equals(prefix);
+    }
+
+    private static String requiredText(JsonNode op, String field) {
+        JsonNode value = op.get(field);
+        if (value == null || !value.isTextual()) {
+            throw new IllegalArgumentException("JSON Patch: \"" + field + "\" が必要です。");
+        }
+        return value.asText();
+    }
+
+    private static JsonNode requiredValue(JsonNode op) {
+        if (!op.has("value")) {
+            throw new IllegalArgumentException("JSON Patch: \"value\" が必要です。");
+        }
+        return op.get("value");
+    }
+}
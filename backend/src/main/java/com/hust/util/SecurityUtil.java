@@ -3,6 +3,7 @@ package com.hust.util;
 import com.hust.entity.User;
 import com.hust.exception.UnauthorizedException;
 import com.hust.repository.UserRepository;
+import com.hust.security.AuthenticatedUser;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -27,6 +28,13 @@ public class SecurityUtil {
     }
 
     public static Long getCurrentUserId() {
+        // Principal dựng từ JWT (claim uid): không cần query DB.
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser principal) {
+            return principal.getId();
+        }
+
+        // Token cũ không có claim uid: tra theo username như trước.
         String username = getCurrentUsername();
         if (username == null || username.isBlank()) {
             throw new UnauthorizedException("ログインしていません。");
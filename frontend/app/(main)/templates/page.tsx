@@ -16,7 +16,7 @@ import {
   DropdownMenuSeparator,
   DropdownMenuTrigger,
 } from '@/components/ui/dropdown-menu';
-import { createPresentationFromTemplateApi, getTemplatesApi, deleteTemplateApi, getTemplateSlidesApi } from '@/lib/api';
+import { createPresentationFromTemplateApi, getTemplatesApi, deleteTemplateApi, getTemplateSlidesApi, resolveApiUrl } from '@/lib/api';
 import { TemplateResponse } from '@/types/api/TemplateResponses';
 import { toast } from 'sonner';
 import { cn } from '@/lib/utils/cn';
@@ -298,7 +298,12 @@ function TemplateLibraryPageInner() {
     <Card className="border border-gray-200 overflow-hidden hover:shadow-lg transition-shadow">
       <div className="relative h-56">
         {template.previewImageUrl ? (
-          <img src={template.previewImageUrl} alt={template.name} className="absolute inset-0 w-full h-full object-cover" />
+          <img
+            src={resolveApiUrl(template.previewImageUrl) + (template.previewImageUrl.startsWith('/') ? '&w=640' : '')}
+            alt={template.name}
+            loading="lazy"
+            className="absolute inset-0 w-full h-full object-cover"
+          />
         ) : (
           <div
             className={cn(
@@ -23,6 +23,9 @@ const normalizeApiBaseUrl = (raw?: string) => {
 // Lấy Base URL từ biến môi trường (luôn trỏ về context-path /api)
 const API_BASE_URL = normalizeApiBaseUrl(process.env.NEXT_PUBLIC_API_URL);
 
+// URL tương đối do API trả về (vd. "/templates/1/preview?v=...") => URL tuyệt đối dưới /api; data:/http(s) giữ nguyên.
+export const resolveApiUrl = (url: string) => (url.startsWith('/') ? `${API_BASE_URL}${url}` : url);
+
 const axiosClient = axios.create({
   baseURL: API_BASE_URL,
   headers: {
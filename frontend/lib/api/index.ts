@@ -1,4 +1,5 @@
 import axiosClient from './axios-client';
+export { resolveApiUrl } from './axios-client';
 import { LoginRequest, RegisterRequest } from '@/types/api/AuthRequests';
 import { AuthResponse } from '@/types/api/AuthResponses';
 import { PresentationResponse } from '@/types/api/PresentationResponses';